@@ -5,14 +5,25 @@ package nuist.ghost.demo3.config;
  * @Description: Utility component for data initialization from data/members.json file. 
  *               Command line runner will run after the spring boot application starts
  *               ensure data/members.json file exists in the root directory of the project with correct format
+ *               The write-ahead journal (MemberJournal) is replayed on top of the snapshot, then started
+ *               together with the background snapshot writer (PersistenceScheduler)
+ *               members.json is read record by record (optionally in parallel) and bulk-loaded into the
+ *               repository; corrupt or duplicate records are skipped and reported instead of aborting startup
+ *               If data/members.bin (binary snapshot) is at least as new as members.json it is loaded instead,
+ *               which skips JSON parsing entirely
  */
 
 import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.persistence.MemberBinaryFormat;
+import nuist.ghost.demo3.persistence.MemberJournal;
+import nuist.ghost.demo3.persistence.PersistenceScheduler;
 import nuist.ghost.demo3.repository.MemberRepository;
 import nuist.ghost.demo3.utils.JsonUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -21,10 +32,22 @@ import java.util.List;
 @Component
 public class DataInitializer implements CommandLineRunner {
     private final MemberRepository memberRepository;
-    final Path DATAPATH = Paths.get("data", "members.json");
+    private final MemberJournal memberJournal;
+    private final PersistenceScheduler persistenceScheduler;
+    private final boolean parallelLoad;
+    final Path DATAPATH;
+    final Path BINARYPATH;
 
-    public DataInitializer(MemberRepository memberRepository) {
+    public DataInitializer(MemberRepository memberRepository, MemberJournal memberJournal,
+                           PersistenceScheduler persistenceScheduler,
+                           @Value("${members.data-dir:data}") String dataDir,
+                           @Value("${members.loader.parallel:true}") boolean parallelLoad) {
         this.memberRepository = memberRepository;
+        this.memberJournal = memberJournal;
+        this.persistenceScheduler = persistenceScheduler;
+        this.parallelLoad = parallelLoad;
+        this.DATAPATH = Paths.get(dataDir, "members.json");
+        this.BINARYPATH = Paths.get(dataDir, "members.bin");
     }
 
     @Override
@@ -32,12 +55,51 @@ public class DataInitializer implements CommandLineRunner {
         System.out.println("开始初始化测试数据...");
         //定义数据文件路径 在根目录下的data目录下members.json
 
-        if (!Files.exists(DATAPATH)) {
+        long start = System.nanoTime();
+        List<Member> members = null;
+        Path loadedFrom = null;
+        if (Files.exists(BINARYPATH) && (!Files.exists(DATAPATH)
+                || Files.getLastModifiedTime(BINARYPATH).compareTo(Files.getLastModifiedTime(DATAPATH)) >= 0)) {
+            try {
+                members = MemberBinaryFormat.read(BINARYPATH);
+                loadedFrom = BINARYPATH;
+            } catch (IOException e) {
+                System.out.println("二进制快照无法读取，改用 JSON：" + e.getMessage());
+            }
+        }
+        if (members == null && Files.exists(DATAPATH)) {
+            JsonUtils.MemberReadResult result = JsonUtils.readMembers(DATAPATH, parallelLoad);
+            for (String problem : result.problems()) {
+                System.out.println("跳过无法解析的记录：" + problem);
+            }
+            members = result.members();
+            loadedFrom = DATAPATH;
+        }
+
+        if (members == null) {
             System.out.println("数据文件不存在，请检查路径！");
-            return;
+        } else {
+            List<Member> rejected = memberRepository.loadAll(members);
+            for (Member member : rejected) {
+                System.out.println("跳过重复 id 或学号的成员：" + member);
+            }
+            System.out.println("已从 " + loadedFrom.getFileName() + " 装载 " + (members.size() - rejected.size())
+                    + " 名成员，用时 " + (System.nanoTime() - start) / 1_000_000 + " ms。");
+        }
+
+        //快照之后的修改记录在预写日志里，重放后再开始记录新的修改
+        int replayed = memberJournal.replayInto(memberRepository);
+        memberJournal.start();
+        persistenceScheduler.start();
+        if (loadedFrom != null && !loadedFrom.equals(persistenceScheduler.snapshotPath())) {
+            //快照格式改过：尽快按当前格式写一份快照
+            persistenceScheduler.markDirty();
+        }
+        if (replayed > 0) {
+            System.out.println("已从预写日志重放 " + replayed + " 条修改。");
+            //重放的修改尽快合并进 members.json，缩短下次启动的重放
+            persistenceScheduler.markDirty();
         }
-        List<Member> members = JsonUtils.readMembersFromPath(DATAPATH);
-        memberRepository.saveAll(members);
 
         System.out.println("数据初始化完成！");
     }
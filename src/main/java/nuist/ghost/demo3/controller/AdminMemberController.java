@@ -6,15 +6,22 @@ package nuist.ghost.demo3.controller;
  *              All of the controller classes are defined in this package
  */
 
+import nuist.ghost.demo3.dto.BulkOperationRequest;
+import nuist.ghost.demo3.dto.BulkOperationResult;
+import nuist.ghost.demo3.dto.QueryCacheStats;
 import nuist.ghost.demo3.service.MemberService;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/admin/members")
 public class AdminMemberController {
@@ -31,6 +38,11 @@ public class AdminMemberController {
         return ResponseEntity.noContent().build();
     }
 
+    @GetMapping("/query-cache") //筛选结果缓存的命中率等统计
+    public QueryCacheStats getQueryCacheStats() {
+        return memberService.getQueryCacheStats();
+    }
+
     @PostMapping("/sample")
     public ResponseEntity<Void> createSampleData() {
         memberService.createSampleData();
@@ -43,27 +55,34 @@ public class AdminMemberController {
         return ResponseEntity.noContent().build();
     }
 
-    @PostMapping("/{id}/promote")
+    @PostMapping("/{id:\\d+}/promote")
     public ResponseEntity<Void> promoteMembers(@PathVariable Long id) {
         memberService.promoteMember(id);
         return ResponseEntity.noContent().build();
     }
 
-    @PostMapping("/{id}/demote")
+    @PostMapping("/{id:\\d+}/demote")
     public ResponseEntity<Void> demoteMembers(@PathVariable Long id) {
         memberService.demoteMember(id);
         return ResponseEntity.noContent().build();
     }
 
-    @PostMapping("/{id}/regularize")
+    @PostMapping("/{id:\\d+}/regularize")
     public ResponseEntity<Void> regularizeMember(@PathVariable Long id) {
         memberService.regularizeMember(id);
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping("/bulk/{operation}")
+    public List<BulkOperationResult> bulkOperation(@PathVariable String operation,
+                                                   @RequestBody BulkOperationRequest request) {
+        /* operation: promote / demote / regularize / delete，按 id 列表或过滤条件批量执行 */
+        return memberService.bulkOperation(operation, request);
+    }
+
     @PostMapping("/sort-by-id")
     public ResponseEntity<Void> sortMembersByStudentID() {
-        memberService.sortMembersByStudentID(memberService.getAllMembers());
+        /* 仓库本身按 id 有序（列表总是按 id 升序），无需排序；保留这个接口，旧的前端调用时直接返回 204 */
         return ResponseEntity.noContent().build();
     }
 }
@@ -6,10 +6,22 @@ package nuist.ghost.demo3.controller;
  *              All of the controller classes are defined in this package
  */
 
+import nuist.ghost.demo3.dto.BatchCreateResult;
 import nuist.ghost.demo3.dto.CreateMemberRequest;
+import nuist.ghost.demo3.dto.MemberQueryRequest;
+import nuist.ghost.demo3.dto.MemberQueryResult;
+import nuist.ghost.demo3.dto.RosterStats;
 import nuist.ghost.demo3.dto.UpdateMemberRequest;
 import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.ScoreField;
+import nuist.ghost.demo3.repository.MemberSnapshot;
+import nuist.ghost.demo3.repository.RankedMember;
 import nuist.ghost.demo3.service.MemberService;
+import nuist.ghost.demo3.utils.JsonUtils;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -17,9 +29,21 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.*;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/members")
@@ -31,59 +55,249 @@ public class MemberController {
         this.memberService = memberService;
     }
 
+    /**
+     * 所有列表接口都支持键集分页：?limit=50&after=<上一页最后一个 id>
+     * 不传 limit 时以流式 JSON 返回全部结果；还有下一页时响应头带 Link: <...>; rel="next"
+     * 分数区间接口按分数从高到低、同分按 id 排序，游标是上一页最后一个成员的 after=<id>&afterScore=<分数>
+     * 读接口都带 ETag / Last-Modified 和 Cache-Control: no-cache，浏览器每次刷新都会带上 If-None-Match 再验证；
+     * 数据没变时直接返回 304，不查询也不序列化
+     */
+    static final int MAX_PAGE_SIZE = 1000;
+
     @GetMapping
-    public List<Member> getAllMembers() {
-        return memberService.getAllMembers();
+    public ResponseEntity<StreamingResponseBody> getAllMembers(@RequestParam(required = false) Long after,
+                                                               @RequestParam(required = false) Integer limit,
+                                                               WebRequest webRequest) {
+        return page(webRequest, after, limit, memberService::streamAllMembers);
     }
 
     @GetMapping("/{id}")
-    public Member getMemberByID(@PathVariable Long id) {
-        return memberService.getMemberByID(id);
+    public ResponseEntity<Member> getMemberByID(@PathVariable Long id) {
+        long lastModified = memberService.lastModified();
+        return single(memberService.getMemberByID(id), lastModified);
+    }
+
+    @GetMapping("/search") //输入即搜索：姓名任意片段 / 学号前缀，按相关度排序
+    public ResponseEntity<List<Member>> searchMembers(@RequestParam String q,
+                                                      @RequestParam(required = false) String field,
+                                                      @RequestParam(defaultValue = "10") int limit,
+                                                      WebRequest webRequest) {
+        MemberSnapshot current = memberService.snapshot();
+        if (notModified(webRequest, memberService.storeTag(current), current.modifiedAt())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(memberService.searchMembers(current, q, field, limit));
+    }
+
+    @GetMapping("/stats") //各职位人数、实习/正式人数、各项分数的平均分和直方图
+    public ResponseEntity<RosterStats> getRosterStats(WebRequest webRequest) {
+        // 先取 ETag 再取统计：统计比 ETag 新只会让下次请求多返回一次 200
+        String tag = memberService.statsTag();
+        if (notModified(webRequest, tag, -1)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(memberService.getRosterStats());
+    }
+
+    @GetMapping("/leaderboard/{field}") //排行榜：某项分数的前 limit 名，scope=all/intern/official
+    public ResponseEntity<List<RankedMember>> getLeaderboard(@PathVariable String field,
+                                                             @RequestParam(required = false) String scope,
+                                                             @RequestParam(defaultValue = "10") int limit,
+                                                             WebRequest webRequest) {
+        MemberSnapshot current = memberService.snapshot();
+        if (notModified(webRequest, memberService.storeTag(current), current.modifiedAt())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(memberService.getLeaderboard(current, field, scope, limit));
+    }
+
+    @GetMapping("/leaderboard/{field}/{id}") //某个成员的名次
+    public RankedMember getLeaderboardRank(@PathVariable String field, @PathVariable Long id,
+                                           @RequestParam(required = false) String scope) {
+        return memberService.getLeaderboardRank(field, scope, id);
     }
 
     @GetMapping("/name/{name}")
-    public List<Member> getMembersByName(@PathVariable String name) {
-        return memberService.getMembersByName(name);
+    public ResponseEntity<StreamingResponseBody> getMembersByName(@PathVariable String name,
+                                                                  @RequestParam(required = false) Long after,
+                                                                  @RequestParam(required = false) Integer limit,
+                                                                  WebRequest webRequest) {
+        return page(webRequest, after, limit, (snapshot, a) -> memberService.getMembersByName(snapshot, name, a));
     }
 
     @GetMapping("/student-id/{studentID}")
-    public Member getMemberByStudentID(@PathVariable String studentID) {
-        return memberService.getMemberByStudentID(studentID);
+    public ResponseEntity<Member> getMemberByStudentID(@PathVariable String studentID) {
+        long lastModified = memberService.lastModified();
+        return single(memberService.getMemberByStudentID(studentID), lastModified);
     }
 
     @GetMapping("/probation/official")
-    public List<Member> getOfficialMembers() {
-        return memberService.getMembersByIsProbation(false);
+    public ResponseEntity<StreamingResponseBody> getOfficialMembers(@RequestParam(required = false) Long after,
+                                                                    @RequestParam(required = false) Integer limit,
+                                                                    WebRequest webRequest) {
+        return page(webRequest, after, limit, (snapshot, a) -> memberService.getMembersByIsProbation(snapshot, false, a));
     }
 
     @GetMapping("/probation/intern")
-    public List<Member> getProbationMembers() {
-        return memberService.getMembersByIsProbation(true);
+    public ResponseEntity<StreamingResponseBody> getProbationMembers(@RequestParam(required = false) Long after,
+                                                                     @RequestParam(required = false) Integer limit,
+                                                                     WebRequest webRequest) {
+        return page(webRequest, after, limit, (snapshot, a) -> memberService.getMembersByIsProbation(snapshot, true, a));
     }
 
     @GetMapping("/internship-score-greater-than/{score}")
-    public List<Member> getMembersByInternshipScoreGreaterThan(@PathVariable double score) {
-        return memberService.getMembersByInternshipScoreGreaterThan(score);
+    public ResponseEntity<StreamingResponseBody> getMembersByInternshipScoreGreaterThan(@PathVariable double score,
+                                                                                        @RequestParam(required = false) Long after,
+                                                                                        @RequestParam(required = false) Double afterScore,
+                                                                                        @RequestParam(required = false) Integer limit,
+                                                                                        WebRequest webRequest) {
+        return page(webRequest, limit, snapshot -> memberService.getMembersByInternshipScoreGreaterThan(snapshot, score, after, afterScore), scoreCursor("internship"));
+    }
+
+    @GetMapping("/{field}-score/gt/{score}")
+    public ResponseEntity<StreamingResponseBody> getMembersByScoreGreaterThan(@PathVariable String field, @PathVariable double score,
+                                                                              @RequestParam(required = false) Long after,
+                                                                              @RequestParam(required = false) Double afterScore,
+                                                                              @RequestParam(required = false) Integer limit,
+                                                                              WebRequest webRequest) {
+        return page(webRequest, limit, snapshot -> memberService.getMembersByScoreGreaterThan(snapshot, field, score, after, afterScore), scoreCursor(field));
+    }
+
+    @GetMapping("/{field}-score/lt/{score}")
+    public ResponseEntity<StreamingResponseBody> getMembersByScoreLessThan(@PathVariable String field, @PathVariable double score,
+                                                                           @RequestParam(required = false) Long after,
+                                                                           @RequestParam(required = false) Double afterScore,
+                                                                           @RequestParam(required = false) Integer limit,
+                                                                           WebRequest webRequest) {
+        return page(webRequest, limit, snapshot -> memberService.getMembersByScoreLessThan(snapshot, field, score, after, afterScore), scoreCursor(field));
+    }
+
+    @GetMapping("/{field}-score/between/{min}/{max}")
+    public ResponseEntity<StreamingResponseBody> getMembersByScoreBetween(@PathVariable String field, @PathVariable double min, @PathVariable double max,
+                                                                          @RequestParam(required = false) Long after,
+                                                                          @RequestParam(required = false) Double afterScore,
+                                                                          @RequestParam(required = false) Integer limit,
+                                                                          WebRequest webRequest) {
+        return page(webRequest, limit, snapshot -> memberService.getMembersByScoreBetween(snapshot, field, min, max, after, afterScore), scoreCursor(field));
     }
 
     @GetMapping("/position/{position}")
-    public List<Member> getMembersByPositon(@PathVariable String position){
-        return memberService.getMembersByPositon(position);
+    public ResponseEntity<StreamingResponseBody> getMembersByPositon(@PathVariable String position,
+                                                                     @RequestParam(required = false) Long after,
+                                                                     @RequestParam(required = false) Integer limit,
+                                                                     WebRequest webRequest) {
+        return page(webRequest, after, limit, (snapshot, a) -> memberService.getMembersByPositon(snapshot, position, a));
     }
 
+    private ResponseEntity<Member> single(Member member, long lastModified) {
+        /*
+         * ETag 用成员自己的版本号；If-None-Match 命中时 Spring 直接返回 304，不序列化
+         * lastModified 要在查成员之前读取：宁可偏旧（多返回一次 200），也不能比返回的数据新
+         */
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(memberService.versionTag(member))
+                .lastModified(lastModified)
+                .body(member);
+    }
+
+    private static boolean notModified(WebRequest webRequest, String etag, long lastModified) {
+        /* 比较请求里的 If-None-Match / If-Modified-Since，同时把 ETag、Last-Modified 写入响应头 */
+        return webRequest.checkNotModified(etag, lastModified);
+    }
+
+    private ResponseEntity<StreamingResponseBody> page(WebRequest webRequest, Long after, Integer limit,
+                                                       BiFunction<MemberSnapshot, Long, Stream<Member>> query) {
+        /*按 id 升序的列表：游标就是上一页最后一个 id*/
+        return page(webRequest, limit, snapshot -> query.apply(snapshot, after), (next, last) -> next.replaceQueryParam("after", last.getId()));
+    }
 
+    private static BiConsumer<UriComponentsBuilder, Member> scoreCursor(String field) {
+        /*分数区间列表的下一页游标：最后一个成员的 id 和分数*/
+        ScoreField scoreField = ScoreField.fromPathName(field);
+        return (next, last) -> next.replaceQueryParam("after", last.getId())
+                .replaceQueryParam("afterScore", scoreField.of(last));
+    }
 
+    private ResponseEntity<StreamingResponseBody> page(WebRequest webRequest, Integer limit,
+                                                       Function<MemberSnapshot, Stream<Member>> query,
+                                                       BiConsumer<UriComponentsBuilder, Member> cursor) {
+        /*
+         * 同一 URL（含 after / limit）的结果只取决于仓库版本，所以整个仓库共用一个版本号作 ETag
+         * 查询从生成 ETag 的同一个快照读取成员：返回的记录不会比 ETag 旧，旧数据不会被 304 一直沿用下去
+         */
+        MemberSnapshot current = memberService.snapshot();
+        if (notModified(webRequest, memberService.storeTag(current), current.modifiedAt())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).build();
+        }
+        Stream<Member> rows = query.apply(current);
+        if (limit == null) {
+            // 不分页时直接从仓库逐个写出，每个请求占用的内存与成员数量无关
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).contentType(MediaType.APPLICATION_JSON).body(json(rows));
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            rows.close();
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        /*多取一条用来判断是否还有下一页*/
+        List<Member> pageRows;
+        try (rows) {
+            pageRows = rows.limit(limit + 1L).collect(Collectors.toList());
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(CacheControl.noCache()).contentType(MediaType.APPLICATION_JSON);
+        if (pageRows.size() > limit) {
+            pageRows = pageRows.subList(0, limit);
+            UriComponentsBuilder builder = ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam("limit", limit);
+            cursor.accept(builder, pageRows.get(limit - 1));
+            String next = builder.build().toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(json(pageRows.stream()));
+    }
+
+    private static StreamingResponseBody json(Stream<Member> rows) {
+        return out -> {
+            try (rows) {
+                JsonUtils.writeArray(rows, out);
+            }
+        };
+    }
 
     @PostMapping //创建成员 Create Member
     public Member createMember(@RequestBody CreateMemberRequest request) {
         return memberService.createMember(request);
     }
 
+    @PostMapping("/query") //组合查询：多个条件同时满足，可排序分页
+    public MemberQueryResult queryMembers(@RequestBody MemberQueryRequest request) {
+        return memberService.queryMembers(request);
+    }
+
+    @PostMapping("/batch") //批量创建成员 Create Members in one request
+    public List<BatchCreateResult> createMembers(@RequestBody List<CreateMemberRequest> requests) {
+        /* 每条请求单独给出结果，部分失败不影响其余成员的创建 */
+        return memberService.createMembers(requests);
+    }
+
     @PutMapping("/{id}")  //更新   成员信息 Update Member Info
-    public ResponseEntity<Member> updateMember(@PathVariable Long id, @RequestBody UpdateMemberRequest request) {
-        /* 更新成员信息 Update Member Info */
-        Member updatedMember = memberService.updateMember(id, request);
-        return ResponseEntity.ok(updatedMember);
+    public ResponseEntity<Member> updateMember(@PathVariable Long id, @RequestBody UpdateMemberRequest request,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        /* 更新成员信息 Update Member Info；带 If-Match 时，成员已被别人修改则返回 412 */
+        Member updatedMember = memberService.updateMember(id, request, strongEntityTags(ifMatch));
+        return ResponseEntity.ok().eTag(memberService.versionTag(updatedMember)).body(updatedMember);
+    }
+
+    private static List<String> strongEntityTags(String header) {
+        /*
+         * If-Match 用强比较（RFC 9110）："a", W/"b", * -> [a, *]，弱标签永远不匹配，只带弱标签时返回 412
+         * 没有这个请求头时返回 null
+         */
+        if (header == null || header.isBlank()) return null;
+        return Stream.of(header.split(","))
+                .map(String::trim)
+                .filter(tag -> !tag.startsWith("W/"))
+                .map(tag -> tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"") ? tag.substring(1, tag.length() - 1) : tag)
+                .collect(Collectors.toList());
     }
 
     @DeleteMapping("/{id}") //删除    成员 Delete Member
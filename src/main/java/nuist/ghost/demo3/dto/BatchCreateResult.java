@@ -0,0 +1,28 @@
+package nuist.ghost.demo3.dto;
+/**
+ * @description 批量创建中单条请求的结果
+ *              index: 该条在请求数组中的下标
+ *              status: 与单条创建相同的 HTTP 状态码语义 201 已创建 / 400 参数错误 / 409 学号重复
+ *              member: 创建成功时的成员，否则为 null；message: 失败原因，成功时为 null
+ */
+
+import nuist.ghost.demo3.entities.Member;
+
+public record BatchCreateResult(
+        int index,
+        int status,
+        Member member,
+        String message
+) {
+    public static BatchCreateResult created(int index, Member member) {
+        return new BatchCreateResult(index, 201, member, null);
+    }
+
+    public static BatchCreateResult invalid(int index, String message) {
+        return new BatchCreateResult(index, 400, null, message);
+    }
+
+    public static BatchCreateResult duplicate(int index, String message) {
+        return new BatchCreateResult(index, 409, null, message);
+    }
+}
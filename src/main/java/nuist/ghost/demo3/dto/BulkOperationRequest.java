@@ -0,0 +1,23 @@
+package nuist.ghost.demo3.dto;
+/**
+ * @description 批量管理操作（晋升 / 降级 / 转正 / 删除）的目标
+ *              给出 ids 时只处理这些成员；否则按过滤条件选出成员，条件之间是"且"的关系：
+ *              memberType 职位、isProbation 是否实习期、scoreField + minScore / maxScore 分数区间（闭区间）
+ *              例：所有实习分不低于 15 的实习成员
+ *              {"isProbation": true, "scoreField": "internship", "minScore": 15}
+ */
+
+import java.util.List;
+
+public record BulkOperationRequest(
+        List<Long> ids,
+        String memberType,
+        Boolean isProbation,
+        String scoreField,
+        Double minScore,
+        Double maxScore
+) {
+    public boolean hasFilter() {
+        return memberType != null || isProbation != null || scoreField != null;
+    }
+}
@@ -0,0 +1,32 @@
+package nuist.ghost.demo3.dto;
+/**
+ * @description 批量管理操作中单个成员的结果
+ *              status: 200 成功 / 400 不能执行（例如已是最高职位）/ 404 成员不存在
+ *                      / 409 一直被并发修改，重试次数用完，可以稍后重试
+ *              member: 操作后的成员（删除成功时为 null）；message: 失败原因
+ */
+
+import nuist.ghost.demo3.entities.Member;
+
+public record BulkOperationResult(
+        Long id,
+        int status,
+        Member member,
+        String message
+) {
+    public static BulkOperationResult done(Long id, Member member) {
+        return new BulkOperationResult(id, 200, member, null);
+    }
+
+    public static BulkOperationResult rejected(Long id, String message) {
+        return new BulkOperationResult(id, 400, null, message);
+    }
+
+    public static BulkOperationResult conflict(Long id, String message) {
+        return new BulkOperationResult(id, 409, null, message);
+    }
+
+    public static BulkOperationResult notFound(Long id) {
+        return new BulkOperationResult(id, 404, null, "Member is not existed: id=" + id);
+    }
+}
@@ -0,0 +1,28 @@
+package nuist.ghost.demo3.dto;
+/**
+ * @description 组合查询 POST /api/members/query 的请求体，所有条件之间是"且"的关系，不传的条件不限制
+ *              memberType 职位、isProbation 是否实习期、name 姓名完全匹配、nameContains 姓名包含（忽略大小写）
+ *              scores: 分数字段 interview / internship / salary -> 闭区间 {min, max}，min / max 可只给一个
+ *              sortBy: id（默认）/ name / studentID / joinDate / interview / internship / salary；descending 倒序
+ *              offset / limit 分页，limit 默认 100
+ *              例：实习分 15 分以上的实习部长，按实习分从高到低取前 10 个
+ *              {"memberType": "SectionHead", "isProbation": true, "scores": {"internship": {"min": 15}},
+ *               "sortBy": "internship", "descending": true, "limit": 10}
+ */
+
+import java.util.Map;
+
+public record MemberQueryRequest(
+        String memberType,
+        Boolean isProbation,
+        String name,
+        String nameContains,
+        Map<String, ScoreRange> scores,
+        String sortBy,
+        Boolean descending,
+        Integer offset,
+        Integer limit
+) {
+    public record ScoreRange(Double min, Double max) {
+    }
+}
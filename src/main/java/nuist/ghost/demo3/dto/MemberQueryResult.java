@@ -0,0 +1,19 @@
+package nuist.ghost.demo3.dto;
+/**
+ * @description 组合查询的结果
+ *              total: 满足条件的成员总数（不受分页影响）；members: 当前页
+ *              plan: 查询计划说明，例如 "memberType index (~12 rows), then filter: isProbation, internship"
+ */
+
+import nuist.ghost.demo3.entities.Member;
+
+import java.util.List;
+
+public record MemberQueryResult(
+        int total,
+        int offset,
+        int limit,
+        String plan,
+        List<Member> members
+) {
+}
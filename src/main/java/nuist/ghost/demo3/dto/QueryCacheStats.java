@@ -0,0 +1,17 @@
+package nuist.ghost.demo3.dto;
+/**
+ * @description 筛选结果缓存的统计信息
+ *              hitRate = hits / (hits + misses)；evictions: 因超出容量被淘汰的条数；
+ *              invalidations: 因成员变化被删除的条数；entries / cachedMembers: 当前缓存的条数和成员总数
+ */
+
+public record QueryCacheStats(
+        long hits,
+        long misses,
+        double hitRate,
+        long evictions,
+        long invalidations,
+        int entries,
+        long cachedMembers
+) {
+}
@@ -0,0 +1,23 @@
+package nuist.ghost.demo3.dto;
+/**
+ * @description 成员统计 GET /api/members/stats
+ *              total 总人数；byMemberType 各职位人数；probation / official 实习期 / 正式成员人数
+ *              scores: interview / internship / salary -> 平均分和直方图
+ */
+
+import java.util.Map;
+
+public record RosterStats(
+        long total,
+        Map<String, Long> byMemberType,
+        long probation,
+        long official,
+        Map<String, ScoreStats> scores
+) {
+    /*
+     * histogram[i] 是分数落在 [i * bucketWidth, (i + 1) * bucketWidth) 的人数，最后一格包含上限；
+     * 超出 [0, 上限] 的分数计入最近的一格
+     */
+    public record ScoreStats(double average, double bucketWidth, long[] histogram) {
+    }
+}
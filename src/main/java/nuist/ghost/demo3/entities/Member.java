@@ -6,39 +6,141 @@ package nuist.ghost.demo3.entities;
  * @description Simplified by Tips from IntelliJ IDEA
  *              So Using Lombok to generate Getters and Setters Methods( they r duplicated) which was added after java 14
  *              All of the entity classes are defined in this package
+ *              memberType picks the subclass when Jackson reads a Member (按 memberType 反序列化为对应子类)
+ *              Compact in memory (紧凑存储), same JSON as before:
+ *                id is a primitive long (UNASSIGNED_ID = not saved yet), getId() still returns Long / null
+ *                a 12-digit studentID is packed into a long; anything else is kept as text
+ *                joinDate is kept as epoch seconds of the local date-time; unparseable text is kept as is
+ *                email is split at the last '@'; common domains share one copy (at most MAX_SHARED_DOMAINS)
+ *              version is the record version kept by MemberRepository (每次保存加一); it is not part of the JSON
  */
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import nuist.ghost.demo3.utils.TimeUtils;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 @Getter
 @Setter
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.EXISTING_PROPERTY, property = "memberType")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = RegularMember.class, name = "RegularMember"),
+        @JsonSubTypes.Type(value = SectionHead.class, name = "SectionHead"),
+        @JsonSubTypes.Type(value = President.class, name = "President")
+})
+@JsonPropertyOrder({"id", "name", "studentID", "email", "phoneNumber", "interviewScore", "internshipScore",
+        "salaryScore", "joinDate", "memberType", "info", "probation"})
 public abstract class Member {
-    private Long id;
+    public static final long UNASSIGNED_ID = Long.MIN_VALUE;
+    private static final long NO_STUDENT_ID = -1L;
+    private static final long NO_JOIN_TIME = Long.MIN_VALUE;
+    /*共享的邮箱域名最多这么多个：域名由用户填写，不能无限增长*/
+    static final int MAX_SHARED_DOMAINS = 256;
+    static final ConcurrentHashMap<String, String> SHARED_DOMAINS = new ConcurrentHashMap<>();
+
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private long id = UNASSIGNED_ID;
     private String name;
-    private String studentID;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private long packedStudentID = NO_STUDENT_ID;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private String studentIDText;//不是 12 位数字时才使用
     private boolean isProbation;//是否为实习期
-    private String email;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private String emailLocalPart;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private String emailDomain;//常见域名共用一个字符串，见 sharedDomain
     private String phoneNumber;
     private double interviewScore;//面试分
     private double internshipScore;//实习分
     private double salaryScore; //工分
-    private String joinDate;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private long joinEpochSecond = NO_JOIN_TIME;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private String joinDateText;//无法按 yyyy-MM-dd HH:mm:ss 解析时才使用
+    @JsonIgnore
+    private long version;//记录版本号，由仓库维护，用于比较并替换
 
 
     protected Member() {
         this.isProbation = true;
         // 默认构造函数
-        this.joinDate = TimeUtils.currentTimestamp();
+        this.joinEpochSecond = TimeUtils.currentEpochSecond();
     }
 
 
     public Member(String name, String studentID) {
         this.name = name;
-        this.studentID = studentID;
+        setStudentID(studentID);
         this.isProbation = true;
-        this.joinDate = TimeUtils.currentTimestamp();
+        this.joinEpochSecond = TimeUtils.currentEpochSecond();
+    }
+
+    public Long getId() {
+        return id == UNASSIGNED_ID ? null : id;
+    }
+
+    public void setId(Long id) {
+        this.id = id == null ? UNASSIGNED_ID : id;
+    }
+
+    public String getStudentID() {
+        if (packedStudentID == NO_STUDENT_ID) return studentIDText;
+        String digits = Long.toString(packedStudentID);
+        return digits.length() >= 12 ? digits : "0".repeat(12 - digits.length()) + digits;
+    }
+
+    public void setStudentID(String studentID) {
+        /*12 位数字（可以有前导 0）压缩成 long，其余原样保存*/
+        if (studentID != null && studentID.length() == 12 && studentID.chars().allMatch(c -> c >= '0' && c <= '9')) {
+            this.packedStudentID = Long.parseLong(studentID);
+            this.studentIDText = null;
+        } else {
+            this.packedStudentID = NO_STUDENT_ID;
+            this.studentIDText = studentID;
+        }
+    }
+
+    public String getEmail() {
+        if (emailDomain == null) return emailLocalPart;
+        return emailLocalPart + "@" + emailDomain;
+    }
+
+    public void setEmail(String email) {
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        if (at < 0) {
+            this.emailLocalPart = email;
+            this.emailDomain = null;
+        } else {
+            this.emailLocalPart = email.substring(0, at);
+            this.emailDomain = sharedDomain(email.substring(at + 1));
+        }
+    }
+
+    private static String sharedDomain(String domain) {
+        /*已共享的域名直接复用；表满之后新域名各存一份（并发时可能略超上限，不影响正确性）*/
+        String shared = SHARED_DOMAINS.get(domain);
+        if (shared != null) return shared;
+        if (SHARED_DOMAINS.size() >= MAX_SHARED_DOMAINS) return domain;
+        shared = SHARED_DOMAINS.putIfAbsent(domain, domain);
+        return shared == null ? domain : shared;
+    }
+
+    public String getJoinDate() {
+        return joinEpochSecond == NO_JOIN_TIME ? joinDateText : TimeUtils.formatEpochSecond(joinEpochSecond);
+    }
+
+    public void setJoinDate(String joinDate) {
+        /*能无损还原成同一个字符串时才按秒存储*/
+        Long epochSecond = TimeUtils.parseEpochSecond(joinDate);
+        this.joinEpochSecond = epochSecond == null ? NO_JOIN_TIME : epochSecond;
+        this.joinDateText = epochSecond == null ? joinDate : null;
     }
 
 
@@ -57,7 +159,7 @@ public abstract class Member {
                         实习分：%.2f
                         工分：%.2f
                         职位：%s""",
-                name, studentID, isProbation, email, phoneNumber, interviewScore, internshipScore, salaryScore, getMemberType()
+                name, getStudentID(), isProbation, getEmail(), phoneNumber, interviewScore, internshipScore, salaryScore, getMemberType()
         );
     }
 
@@ -65,7 +167,7 @@ public abstract class Member {
     public String toString() {
         return String.format(
                 "Member[id=%d, name='%s', studentID='%s', type='%s']",
-                id, name, studentID, getMemberType()
+                getId(), name, getStudentID(), getMemberType()
         );
     }
 }
@@ -0,0 +1,44 @@
+package nuist.ghost.demo3.entities;
+/**
+ * @description The three score fields of a Member (面试分 / 实习分 / 工分).
+ *              Used by the score indexes and the /api/members/{field}-score endpoints.
+ */
+
+import java.util.function.ToDoubleFunction;
+
+public enum ScoreField {
+    INTERVIEW("interview", 15, Member::getInterviewScore),
+    INTERNSHIP("internship", 20, Member::getInternshipScore),
+    SALARY("salary", 5500, Member::getSalaryScore);
+
+    private final String pathName;
+    private final double maxScore;
+    private final ToDoubleFunction<Member> getter;
+
+    ScoreField(String pathName, double maxScore, ToDoubleFunction<Member> getter) {
+        this.pathName = pathName;
+        this.maxScore = maxScore;
+        this.getter = getter;
+    }
+
+    public String getPathName() {
+        return pathName;
+    }
+
+    public double getMaxScore() {
+        /*分数上限（下限都是 0），与 MemberService 中的校验一致*/
+        return maxScore;
+    }
+
+    public double of(Member member) {
+        return getter.applyAsDouble(member);
+    }
+
+    public static ScoreField fromPathName(String name) {
+        /*把路径里的 interview / internship / salary 转成枚举*/
+        for (ScoreField field : values()) {
+            if (field.pathName.equalsIgnoreCase(name)) return field;
+        }
+        throw new IllegalArgumentException("Unsupported score field: " + name + ". Use interview/internship/salary.");
+    }
+}
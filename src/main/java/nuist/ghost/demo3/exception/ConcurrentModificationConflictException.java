@@ -0,0 +1,11 @@
+package nuist.ghost.demo3.exception;
+/**
+ * @description Thrown when a member keeps changing under a compare-and-replace until the retries run out (409)
+ *              成员被并发修改，重试次数用完，调用方稍后重试即可
+ */
+
+public class ConcurrentModificationConflictException extends RuntimeException {
+    public ConcurrentModificationConflictException(String message) {
+        super(message);
+    }
+}
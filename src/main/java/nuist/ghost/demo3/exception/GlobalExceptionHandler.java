@@ -35,6 +35,15 @@ public class GlobalExceptionHandler {
                 ));
     }
 
+    @ExceptionHandler(ConcurrentModificationConflictException.class)
+    public ResponseEntity<Map<String, Object>> handleConcurrentModification(ConcurrentModificationConflictException ex) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT) // 409
+                .body(Map.of(
+                        "message", ex.getMessage()
+                ));
+    }
+
     @ExceptionHandler(NotFoundException.class)
     public ResponseEntity<Map<String, Object>> handleNotFound(NotFoundException ex) {
             return ResponseEntity
@@ -44,6 +53,15 @@ public class GlobalExceptionHandler {
                     ));
     }
 
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<Map<String, Object>> handlePreconditionFailed(PreconditionFailedException ex) {
+        return ResponseEntity
+                .status(HttpStatus.PRECONDITION_FAILED) // 412
+                .body(Map.of(
+                        "message", ex.getMessage()
+                ));
+    }
+
     @ExceptionHandler(HttpRequestMethodNotSupportedException.class)
     public ResponseEntity<Map<String, Object>> handleMethodNotSupported(HttpRequestMethodNotSupportedException ex) {
         return ResponseEntity
@@ -0,0 +1,11 @@
+package nuist.ghost.demo3.exception;
+/**
+ * @description Thrown when If-Match does not match the member's current ETag (412)
+ *              成员在读取之后已被其他人修改
+ */
+
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
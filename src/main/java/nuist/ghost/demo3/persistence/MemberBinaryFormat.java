@@ -0,0 +1,216 @@
+package nuist.ghost.demo3.persistence;
+/**
+ * @description Compact binary snapshot of the member store (二进制快照 members.bin).
+ *              Layout, big-endian:
+ *                header  : int magic "CMCM", short format version, int member count
+ *                member  : long id (-1 = none), byte type, byte probation,
+ *                          double interview / internship / salary score,
+ *                          then name, studentID, email, phoneNumber, joinDate as
+ *                          int byte length (-1 = null) + UTF-8 bytes
+ *                trailer : long CRC32 of every member record
+ *              The file is read into one heap ByteBuffer with FileChannel.read, so startup does no JSON parsing.
+ *              It is deliberately not memory-mapped: on Windows a live mapping blocks the ATOMIC_MOVE that
+ *              MemberSnapshotWriter.replace uses for the next snapshot, and a mapping is only released by GC.
+ *              JSON stays the interchange / export format; jsonToBinary and binaryToJson convert between them.
+ */
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.President;
+import nuist.ghost.demo3.entities.RegularMember;
+import nuist.ghost.demo3.entities.SectionHead;
+import nuist.ghost.demo3.utils.JsonUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+public final class MemberBinaryFormat {
+
+    static final int MAGIC = 0x434D434D; // "CMCM"
+    static final short FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 4;
+    private static final int TRAILER_BYTES = 8;
+
+    private static final byte TYPE_REGULAR = 0;
+    private static final byte TYPE_SECTION_HEAD = 1;
+    private static final byte TYPE_PRESIDENT = 2;
+
+    private MemberBinaryFormat() {
+        /* no instantiation */
+    }
+
+    public static void write(Collection<Member> members, Path target) throws IOException {
+        /*与 JSON 快照一样：写临时文件，fsync，再原子替换*/
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream raw = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            DataOutputStream header = new DataOutputStream(raw);
+            header.writeInt(MAGIC);
+            header.writeShort(FORMAT_VERSION);
+            header.writeInt(members.size());
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc));
+            int written = 0;
+            for (Member m : members) {
+                writeMember(m, out);
+                written++;
+            }
+            if (written != members.size()) {
+                throw new IOException("member collection changed while writing " + target);
+            }
+            out.flush();
+            header.writeLong(crc.getValue());
+            header.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            // 与 JSON 快照相同：旧文件没有动过，只需去掉写了一半的临时文件
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        MemberSnapshotWriter.replace(temp, target);
+    }
+
+    private static void writeMember(Member m, DataOutputStream out) throws IOException {
+        out.writeLong(m.getId() == null ? -1L : m.getId());
+        out.writeByte(typeCode(m.getMemberType()));
+        out.writeByte(m.isProbation() ? 1 : 0);
+        out.writeDouble(m.getInterviewScore());
+        out.writeDouble(m.getInternshipScore());
+        out.writeDouble(m.getSalaryScore());
+        writeString(m.getName(), out);
+        writeString(m.getStudentID(), out);
+        writeString(m.getEmail(), out);
+        writeString(m.getPhoneNumber(), out);
+        writeString(m.getJoinDate(), out);
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static List<Member> read(Path source) throws IOException {
+        /*整个文件读进堆内缓冲区后按固定布局顺序解码；魔数、版本或校验和不对时抛出 IOException*/
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("not a member snapshot (size " + size + "): " + source);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("snapshot is truncated: " + source);
+                }
+            }
+            // 读完即关闭文件，不留映射，下一次快照可以直接替换它
+            buffer.flip();
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("bad magic number: " + source);
+            }
+            short version = buffer.getShort();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("unsupported snapshot format version " + version + ": " + source);
+            }
+            int count = buffer.getInt();
+
+            ByteBuffer body = buffer.slice(HEADER_BYTES, (int) size - HEADER_BYTES - TRAILER_BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if (crc.getValue() != buffer.getLong((int) size - TRAILER_BYTES)) {
+                throw new IOException("checksum mismatch, snapshot is corrupt: " + source);
+            }
+
+            List<Member> members = new ArrayList<>(count);
+            try {
+                for (int i = 0; i < count; i++) {
+                    members.add(readMember(body));
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw new IOException("truncated member record " + members.size() + ": " + source, e);
+            }
+            if (body.hasRemaining()) {
+                throw new IOException(body.remaining() + " unexpected trailing bytes: " + source);
+            }
+            return members;
+        }
+    }
+
+    private static Member readMember(ByteBuffer in) {
+        long id = in.getLong();
+        Member m = newMember(in.get());
+        m.setId(id < 0 ? null : id);
+        m.setProbation(in.get() != 0);
+        m.setInterviewScore(in.getDouble());
+        m.setInternshipScore(in.getDouble());
+        m.setSalaryScore(in.getDouble());
+        m.setName(readString(in));
+        m.setStudentID(readString(in));
+        m.setEmail(readString(in));
+        m.setPhoneNumber(readString(in));
+        m.setJoinDate(readString(in));
+        return m;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        if (length > in.remaining()) throw new BufferUnderflowException();
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte typeCode(String memberType) {
+        return switch (memberType) {
+            case "President" -> TYPE_PRESIDENT;
+            case "SectionHead" -> TYPE_SECTION_HEAD;
+            case "RegularMember" -> TYPE_REGULAR;
+            default -> throw new IllegalArgumentException("unknown member type: " + memberType);
+        };
+    }
+
+    private static Member newMember(byte typeCode) {
+        return switch (typeCode) {
+            case TYPE_PRESIDENT -> new President();
+            case TYPE_SECTION_HEAD -> new SectionHead();
+            case TYPE_REGULAR -> new RegularMember();
+            default -> throw new IllegalArgumentException("unknown member type code: " + typeCode);
+        };
+    }
+
+    public static int jsonToBinary(Path json, Path binary) throws IOException {
+        /*转换器：members.json -> members.bin，返回写入的成员数；无法解析的记录会被跳过*/
+        List<Member> members = JsonUtils.readMembers(json, false).members();
+        write(members, binary);
+        return members.size();
+    }
+
+    public static int binaryToJson(Path binary, Path json) throws IOException {
+        /*转换器：members.bin -> members.json（导出 / 交换用）*/
+        List<Member> members = read(binary);
+        MemberSnapshotWriter.writeJson(members, json);
+        return members.size();
+    }
+}
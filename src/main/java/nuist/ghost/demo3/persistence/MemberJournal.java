@@ -0,0 +1,383 @@
+package nuist.ghost.demo3.persistence;
+/**
+ * @description Append-only write-ahead journal of member changes (成员变更的追加式预写日志).
+ *              Every save / delete / clear of MemberRepository becomes one JSON line.
+ *              onChange only queues the record; a background thread serializes queued entries,
+ *              appends them in batches and fsyncs once per batch,
+ *              so a write costs a small sequential append instead of rewriting members.json.
+ *              Each appended line gets a future completed after the fsync of its batch;
+ *              awaitDurable() waits for the calling thread's last change, so a single write is
+ *              only reported as done once it is on disk (group commit).
+ *              The journal is split into numbered segment files under {data-dir}/journal;
+ *              after a full snapshot is written, older segments can be discarded.
+ *              DataInitializer replays all segments on startup on top of members.json.
+ *              If a write fails, the lines of that batch are lost; their futures and the next flush() / rotate()
+ *              throw IllegalStateException instead of reporting them as durable, and appending continues in
+ *              a new segment so a half-written line is never followed by good ones.
+ */
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PreDestroy;
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.exception.DuplicateStudentIDException;
+import nuist.ghost.demo3.repository.MemberChangeListener;
+import nuist.ghost.demo3.repository.MemberRepository;
+import nuist.ghost.demo3.utils.JsonUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@Component
+public class MemberJournal implements MemberChangeListener {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    /*一次 fsync 最多提交的记录数*/
+    private static final int MAX_BATCH = 4096;
+
+    /*写线程要执行的控制命令：FLUSH 等待落盘，ROTATE 切换到新的段文件*/
+    private record Command(String kind, CompletableFuture<Long> done) {
+    }
+
+    private record Entry(String op, Long id, Member member) {
+    }
+
+    /*一条待写入的记录；durable 在它所在的那一批 fsync 之后完成*/
+    private record Line(Entry entry, CompletableFuture<Void> durable) {
+    }
+
+    private final MemberRepository memberRepository;
+    private final Path directory;
+    private final boolean enabled;
+    private final long flushIntervalMillis;
+
+    private final LinkedBlockingQueue<Object> pending = new LinkedBlockingQueue<>();
+    private volatile boolean running;
+    private volatile boolean stopped;
+    private Thread writer;
+    /*当前线程最近一次修改对应的落盘结果，由 awaitDurable 等待*/
+    private final ThreadLocal<CompletableFuture<Void>> lastAppend = new ThreadLocal<>();
+
+    // 以下字段只由写线程访问（start 之前由 replayInto 初始化）
+    private long segment;
+    private FileChannel channel;
+    /*上次 FLUSH / ROTATE 之后写入失败的错误，由下一条命令报告给调用者*/
+    private IOException failure;
+
+    public MemberJournal(MemberRepository memberRepository,
+                         @Value("${members.data-dir:data}") String dataDir,
+                         @Value("${members.journal.enabled:true}") boolean enabled,
+                         @Value("${members.journal.flush-interval-ms:20}") long flushIntervalMillis) {
+        this.memberRepository = memberRepository;
+        this.directory = Paths.get(dataDir, "journal");
+        this.enabled = enabled;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public int replayInto(MemberRepository repository) throws IOException {
+        /*按段号顺序重放所有日志段，返回应用的记录数；末尾写了一半的行会被跳过*/
+        if (!enabled) return 0;
+        int applied = 0;
+        int skipped = 0;
+        List<Long> segments = listSegments();
+        for (long number : segments) {
+            try (BufferedReader reader = Files.newBufferedReader(segmentPath(number), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    if (apply(repository, line)) applied++;
+                    else skipped++;
+                }
+            }
+        }
+        if (skipped > 0) {
+            System.out.println("预写日志中有 " + skipped + " 条记录无法重放，已跳过。");
+        }
+        // 从新的段开始追加，避免接在可能损坏的最后一行后面
+        segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+        return applied;
+    }
+
+    public synchronized void start() {
+        if (!enabled || running) return;
+        running = true;
+        writer = new Thread(this::writeLoop, "member-journal");
+        writer.setDaemon(true);
+        writer.start();
+        memberRepository.addChangeListener(this);
+    }
+
+    @Override
+    public void onChange(Member before, Member after) {
+        if (after != null) {
+            append(new Entry("UPSERT", after.getId(), after));
+        } else {
+            append(new Entry("DELETE", before.getId(), null));
+        }
+    }
+
+    @Override
+    public void onClear() {
+        append(new Entry("CLEAR", null, null));
+    }
+
+    public void flush() {
+        /*阻塞直到此前提交的记录都已 fsync；其中有记录写入失败时抛出 IllegalStateException*/
+        submit("FLUSH");
+    }
+
+    public void awaitDurable() {
+        /*阻塞直到当前线程最近一次修改已 fsync；没有修改或日志未启用时立即返回，写入失败时抛出 IllegalStateException*/
+        CompletableFuture<Void> durable = lastAppend.get();
+        if (durable == null) return;
+        lastAppend.remove();
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    public long rotate() {
+        /*之后的记录写入新段，返回新段号；写快照前调用*/
+        return submit("ROTATE");
+    }
+
+    public void discardBefore(long firstKeptSegment) {
+        /*快照写完后删除已被快照覆盖的旧段*/
+        if (!enabled || firstKeptSegment < 0) return;
+        try {
+            for (long number : listSegments()) {
+                if (number < firstKeptSegment) {
+                    Files.deleteIfExists(segmentPath(number));
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("删除旧的预写日志段失败：" + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws InterruptedException {
+        if (!running) return;
+        memberRepository.removeChangeListener(this);
+        running = false;
+        writer.join();
+    }
+
+    private CompletableFuture<Void> append(Entry entry) {
+        // 调用者持有仓库的发布锁，这里只入队；记录不可变，由写线程序列化
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        lastAppend.set(durable);
+        pending.add(new Line(entry, durable));
+        if (stopped) abandonPending();
+        return durable;
+    }
+
+    private long submit(String kind) {
+        if (!running) return -1;
+        CompletableFuture<Long> done = new CompletableFuture<>();
+        pending.add(new Command(kind, done));
+        // 写线程已经退出时不会再处理这条命令，由提交者自己结束它
+        if (stopped) abandonPending();
+        try {
+            return done.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>();
+        try {
+            while (running || !pending.isEmpty()) {
+                Object first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                collect(first, batch);
+                writeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // 被中断或意外退出时，没写完的这一批和队列里剩下的命令都不能再挂着
+            closeChannel();
+            stopped = true;
+            abandon(batch, "Journal writer has stopped.");
+            abandonPending();
+        }
+    }
+
+    private void collect(Object first, List<Object> batch) throws InterruptedException {
+        /*
+         * 组提交：先取走队列里已有的记录；只有这一条时立即写，单独的一次修改不用等
+         * 队列里还有别的记录说明有并发写入，再在 flushIntervalMillis 内等下一条到来，一起 fsync
+         */
+        if (pending.drainTo(batch, MAX_BATCH - 1) == 0 || first instanceof Command || batch.size() >= MAX_BATCH) return;
+        Object next = pending.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (next == null) return;
+        batch.add(next);
+        pending.drainTo(batch, MAX_BATCH - batch.size());
+    }
+
+    private void writeBatch(List<Object> batch) {
+        StringBuilder lines = new StringBuilder();
+        List<CompletableFuture<Void>> waiting = new ArrayList<>();
+        for (Object item : batch) {
+            if (item instanceof Line line) {
+                try {
+                    lines.append(JsonUtils.objectToJson(line.entry())).append('\n');
+                    waiting.add(line.durable());
+                } catch (IOException e) {
+                    System.out.println("无法写入预写日志：" + e.getMessage());
+                    line.durable().completeExceptionally(
+                            new IllegalStateException("Failed to serialize a journal entry: " + e.getMessage(), e));
+                }
+                continue;
+            }
+            Command command = (Command) item;
+            sync(lines, waiting);
+            lines.setLength(0);
+            waiting.clear();
+            if (command.kind().equals("ROTATE")) {
+                closeChannel();
+                segment++;
+            }
+            if (failure != null) {
+                command.done().completeExceptionally(
+                        new IllegalStateException("Failed to write the journal: " + failure.getMessage(), failure));
+                failure = null;
+            } else {
+                command.done().complete(segment);
+            }
+        }
+        sync(lines, waiting);
+    }
+
+    private void sync(CharSequence lines, List<CompletableFuture<Void>> waiting) {
+        try {
+            writeAndSync(lines);
+        } catch (IOException e) {
+            System.out.println("写入预写日志失败，丢失 " + waiting.size() + " 条记录：" + e.getMessage());
+            // 段尾可能留下写了一半的行：之后的记录写到新段里
+            closeChannel();
+            segment++;
+            if (failure == null) failure = e;
+            else failure.addSuppressed(e);
+            IllegalStateException lost = new IllegalStateException("Failed to write the journal: " + e.getMessage(), e);
+            waiting.forEach(durable -> durable.completeExceptionally(lost));
+            return;
+        }
+        waiting.forEach(durable -> durable.complete(null));
+    }
+
+    private void abandonPending() {
+        List<Object> items = new ArrayList<>();
+        pending.drainTo(items);
+        abandon(items, "Journal writer has stopped.");
+    }
+
+    private static void abandon(List<Object> items, String reason) {
+        /*结束无法再写入的记录和命令：都以异常完成，记录计数后丢弃*/
+        int lines = 0;
+        for (Object item : items) {
+            if (item instanceof Command command) {
+                command.done().completeExceptionally(new IllegalStateException(reason));
+            } else {
+                ((Line) item).durable().completeExceptionally(new IllegalStateException(reason));
+                lines++;
+            }
+        }
+        if (lines > 0) {
+            System.out.println(reason + " 丢失 " + lines + " 条预写日志记录。");
+        }
+    }
+
+    private void writeAndSync(CharSequence lines) throws IOException {
+        if (lines.isEmpty()) return;
+        if (channel == null) {
+            Files.createDirectories(directory);
+            channel = FileChannel.open(segmentPath(segment),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    private boolean apply(MemberRepository repository, String line) {
+        try {
+            JsonNode node = JsonUtils.jsonToObject(line, JsonNode.class);
+            switch (node.path("op").asText()) {
+                case "UPSERT" -> {
+                    // 缺少成员或成员没有 id 的记录无法重放（没有 id 时 save 会分配一个新的）
+                    JsonNode memberNode = node.get("member");
+                    Member member = memberNode == null || !memberNode.isObject() ? null : JsonUtils.jsonToMember(memberNode);
+                    if (member == null || member.getId() == null) return false;
+                    repository.save(member);
+                }
+                case "DELETE" -> {
+                    JsonNode id = node.get("id");
+                    if (id == null || !id.isIntegralNumber()) return false;
+                    repository.deleteById(id.asLong());
+                }
+                case "CLEAR" -> repository.deleteAll();
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException | DuplicateStudentIDException e) {
+            return false;
+        }
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return numbers;
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_SUFFIX))
+                    .forEach(n -> {
+                        try {
+                            numbers.add(Long.parseLong(n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_SUFFIX.length())));
+                        } catch (NumberFormatException ignored) {
+                        }
+                    });
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,62 @@
+package nuist.ghost.demo3.persistence;
+/**
+ * @description Crash-safe writer for members.json (崩溃安全的快照写入).
+ *              Members are streamed to a temp file next to the target with a JsonGenerator,
+ *              the temp file is fsynced, then atomically renamed over the old file.
+ *              A crash at any point leaves either the old or the new file, never a half-written one;
+ *              a write that fails (e.g. a record cannot be serialized) deletes its temp file and keeps the old one.
+ */
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.utils.JsonUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+public final class MemberSnapshotWriter {
+
+    private MemberSnapshotWriter() {
+        /* no instantiation */
+    }
+
+    public static void writeJson(Collection<Member> members, Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            JsonUtils.writeArray(members.stream(), out);
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            // 旧文件没有动过，只需去掉写了一半的临时文件
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        replace(temp, target);
+    }
+
+    static void replace(Path temp, Path target) throws IOException {
+        /*原子重命名，再对目录 fsync 让重命名本身落盘*/
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try (FileChannel dir = FileChannel.open(target.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ignored) {
+            // Windows 不支持打开目录，重命名本身已经是原子的
+        }
+    }
+}
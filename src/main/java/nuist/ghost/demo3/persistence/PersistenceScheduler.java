@@ -0,0 +1,144 @@
+package nuist.ghost.demo3.persistence;
+/**
+ * @description Background persistence (后台合并持久化).
+ *              Repository changes only mark the store dirty; a single background thread writes
+ *              at most one snapshot of members.json per interval, however many edits happened.
+ *              Each snapshot rotates the journal first and discards the segments it covers.
+ *              A final snapshot is written on shutdown if anything is still unsaved.
+ *              members.persistence.format picks the snapshot format: json (members.json) or
+ *              binary (members.bin, see MemberBinaryFormat); JSON export is available either way.
+ */
+
+import jakarta.annotation.PreDestroy;
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.repository.MemberChangeListener;
+import nuist.ghost.demo3.repository.MemberRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Component
+public class PersistenceScheduler implements MemberChangeListener {
+
+    private final MemberRepository memberRepository;
+    private final MemberJournal memberJournal;
+    private final Path jsonPath;
+    private final Path binaryPath;
+    private final boolean binary;
+    private final long intervalMillis;
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private ScheduledExecutorService executor;
+
+    public PersistenceScheduler(MemberRepository memberRepository, MemberJournal memberJournal,
+                                @Value("${members.data-dir:data}") String dataDir,
+                                @Value("${members.persistence.snapshot-interval-ms:5000}") long intervalMillis,
+                                @Value("${members.persistence.format:json}") String format) {
+        this.memberRepository = memberRepository;
+        this.memberJournal = memberJournal;
+        this.jsonPath = Paths.get(dataDir, "members.json");
+        this.binaryPath = Paths.get(dataDir, "members.bin");
+        this.binary = switch (format) {
+            case "json" -> false;
+            case "binary" -> true;
+            default -> throw new IllegalArgumentException("members.persistence.format must be json or binary: " + format);
+        };
+        this.intervalMillis = intervalMillis;
+    }
+
+    public synchronized void start() {
+        if (executor != null) return;
+        memberRepository.addChangeListener(this);
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "member-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::snapshotIfDirty, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onChange(Member before, Member after) {
+        dirty.set(true);
+    }
+
+    @Override
+    public void onClear() {
+        dirty.set(true);
+    }
+
+    public void markDirty() {
+        dirty.set(true);
+    }
+
+    public Path snapshotPath() {
+        /*后台快照写入的文件（members.json 或 members.bin）*/
+        return binary ? binaryPath : jsonPath;
+    }
+
+    public synchronized void snapshotNow() throws IOException {
+        /*立即写一次快照（导出接口和关机时使用）*/
+        dirty.set(false);
+        long firstKeptSegment = -1;
+        try {
+            firstKeptSegment = memberJournal.rotate();
+        } catch (IllegalStateException e) {
+            // 有日志记录没能落盘：照常写快照把这些修改补上，这一次不删除日志段
+            System.out.println("预写日志切换失败：" + e.getMessage());
+        }
+        try {
+            List<Member> members = memberRepository.snapshot().members();
+            if (binary) {
+                MemberBinaryFormat.write(members, binaryPath);
+            } else {
+                MemberSnapshotWriter.writeJson(members, jsonPath);
+            }
+        } catch (IOException | RuntimeException e) {
+            dirty.set(true);
+            throw e;
+        }
+        memberJournal.discardBefore(firstKeptSegment);
+    }
+
+    public void exportJson() throws IOException {
+        /*导出 members.json：JSON 格式时就是一次快照；二进制格式时另外写一份 JSON，不影响预写日志*/
+        if (binary) {
+            MemberSnapshotWriter.writeJson(memberRepository.snapshot().members(), jsonPath);
+        } else {
+            snapshotNow();
+        }
+    }
+
+    void snapshotIfDirty() {
+        /*定时器每个周期调用一次；包内可见，测试直接调用而不用等定时器*/
+        if (!dirty.get()) return;
+        try {
+            snapshotNow();
+        } catch (Exception e) {
+            // 日志仍然保留着这些修改，下个周期再试
+            System.out.println("后台写入快照失败：" + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = executor;
+            executor = null;
+        }
+        if (running == null) return;
+        memberRepository.removeChangeListener(this);
+        running.shutdown();
+        running.awaitTermination(10, TimeUnit.SECONDS);
+        snapshotIfDirty();
+    }
+}
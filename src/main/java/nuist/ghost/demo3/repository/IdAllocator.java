@@ -0,0 +1,79 @@
+package nuist.ghost.demo3.repository;
+/**
+ * @description Hands out the smallest non-negative id that is not in use (最小可用 ID 分配器).
+ *              Free ids are kept as disjoint ranges [start, end) in a TreeMap,
+ *              so allocate / reserve / release are O(log n) and never scan the store.
+ */
+
+import java.util.Map;
+import java.util.TreeMap;
+
+final class IdAllocator {
+
+    private final TreeMap<Long, Long> freeRanges = new TreeMap<>();
+
+    IdAllocator() {
+        reset();
+    }
+
+    synchronized long allocate() {
+        /*取出最小的空闲 id*/
+        Map.Entry<Long, Long> first = freeRanges.pollFirstEntry();
+        long id = first.getKey();
+        if (id + 1 < first.getValue()) {
+            freeRanges.put(id + 1, first.getValue());
+        }
+        return id;
+    }
+
+    synchronized void reserve(long id) {
+        /*标记一个外部指定的 id 为已占用（例如从文件加载的成员）*/
+        if (id < 0) return;
+        Map.Entry<Long, Long> range = freeRanges.floorEntry(id);
+        if (range == null || id >= range.getValue()) return;
+        freeRanges.remove(range.getKey());
+        if (range.getKey() < id) {
+            freeRanges.put(range.getKey(), id);
+        }
+        if (id + 1 < range.getValue()) {
+            freeRanges.put(id + 1, range.getValue());
+        }
+    }
+
+    synchronized void release(long id) {
+        /*归还 id，并与相邻的空闲区间合并*/
+        if (id < 0) return;
+        Map.Entry<Long, Long> lower = freeRanges.floorEntry(id);
+        if (lower != null && id < lower.getValue()) return;
+        long start = id;
+        long end = id + 1;
+        if (lower != null && lower.getValue() == id) {
+            start = lower.getKey();
+            freeRanges.remove(start);
+        }
+        Long higherEnd = freeRanges.remove(end);
+        if (higherEnd != null) {
+            end = higherEnd;
+        }
+        freeRanges.put(start, end);
+    }
+
+    synchronized void rebuild(Iterable<Long> usedIdsAscending) {
+        /*根据升序排列的已用 id 一次性重建空闲区间（批量装载用）*/
+        freeRanges.clear();
+        long next = 0;
+        for (long id : usedIdsAscending) {
+            if (id < next) continue;
+            if (id > next) {
+                freeRanges.put(next, id);
+            }
+            next = id + 1;
+        }
+        freeRanges.put(next, Long.MAX_VALUE);
+    }
+
+    synchronized void reset() {
+        freeRanges.clear();
+        freeRanges.put(0L, Long.MAX_VALUE);
+    }
+}
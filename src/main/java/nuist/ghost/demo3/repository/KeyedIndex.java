@@ -0,0 +1,79 @@
+package nuist.ghost.demo3.repository;
+/**
+ * @description Secondary index from an attribute value to the ids that have it (二级索引: 属性值 -> id 集合).
+ *              Ids in each bucket are kept sorted, so results come back in id order.
+ *              The key is read from the member record; add / remove take the old and the new record.
+ *              Each bucket keeps its own size, so count(key) is O(1) (used by the query planner).
+ */
+
+import nuist.ghost.demo3.entities.Member;
+
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+final class KeyedIndex<K> {
+
+    /*ConcurrentSkipListSet.size() 要遍历整个集合，所以另外记录大小；size 只在 buckets.compute 内修改*/
+    private static final class Bucket {
+        private final ConcurrentSkipListSet<Long> ids = new ConcurrentSkipListSet<>();
+        private volatile int size;
+    }
+
+    private final ConcurrentHashMap<K, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Function<Member, K> keyOf;
+
+    KeyedIndex(Function<Member, K> keyOf) {
+        this.keyOf = keyOf;
+    }
+
+    void add(Member before, Member after) {
+        /*发布新记录之前调用：把 after 加入它的桶（before 为 null 表示新增）*/
+        K key = key(after);
+        if (key == null || key.equals(key(before))) return;
+        buckets.compute(key, (k, bucket) -> {
+            if (bucket == null) bucket = new Bucket();
+            if (bucket.ids.add(after.getId())) bucket.size++;
+            return bucket;
+        });
+    }
+
+    void remove(Member before, Member after) {
+        /*发布之后调用：before 的键不再成立时移出（after 为 null 表示删除）*/
+        K key = key(before);
+        if (key != null && !Objects.equals(key, key(after))) {
+            removeFromBucket(key, before.getId());
+        }
+    }
+
+    private K key(Member m) {
+        return m == null ? null : keyOf.apply(m);
+    }
+
+    NavigableSet<Long> ids(K key) {
+        if (key == null) return Collections.emptyNavigableSet();
+        Bucket bucket = buckets.get(key);
+        return bucket == null ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(bucket.ids);
+    }
+
+    int count(K key) {
+        if (key == null) return 0;
+        Bucket bucket = buckets.get(key);
+        return bucket == null ? 0 : bucket.size;
+    }
+
+    void clear() {
+        buckets.clear();
+    }
+
+    private void removeFromBucket(K key, long id) {
+        // 空桶直接丢弃，避免姓名索引里堆积大量空集合
+        buckets.computeIfPresent(key, (k, bucket) -> {
+            if (bucket.ids.remove(id)) bucket.size--;
+            return bucket.size == 0 ? null : bucket;
+        });
+    }
+}
@@ -0,0 +1,39 @@
+package nuist.ghost.demo3.repository;
+/**
+ * @description Callback for every change that MemberRepository makes (仓库变更监听器).
+ *              before is null for an insert, after is null for a delete.
+ *              Called on the writing thread under the repository's publish lock, which every write passes through:
+ *              a callback must do O(1) work and leave anything heavier (serialization, I/O) to another thread.
+ *              Callbacks come one at a time in version order; during a callback MemberRepository.version()
+ *              is the version of the reported change (onLoad / onClear included).
+ *              onLoad reports the members bulk-loaded at startup (loadAll); they come from disk,
+ *              so listeners that persist changes ignore it.
+ *              onChanges reports the changes of one MemberRepository.batch, published as a single version;
+ *              by default it calls onChange for each of them in order.
+ */
+
+import nuist.ghost.demo3.entities.Member;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface MemberChangeListener {
+
+    /*一条记录的修改：before / after 为 null 表示新增 / 删除*/
+    record Change(Member before, Member after) {
+    }
+
+    void onChange(Member before, Member after);
+
+    default void onChanges(List<Change> changes) {
+        for (Change change : changes) {
+            onChange(change.before(), change.after());
+        }
+    }
+
+    default void onClear() {
+    }
+
+    default void onLoad(Collection<Member> loaded) {
+    }
+}
@@ -3,87 +3,481 @@ package nuist.ghost.demo3.repository;
  * Store Member Info 储存成员信息
  * @author  Chuhang Zhang 张初航
  * @author  Kai Cai 蔡凯
+ * @description Members are kept by id in a ConcurrentHashMap (O(1) by id), with a unique studentID index,
+ *              KeyedIndex / SearchIndex secondary indexes, and an id-ordered MemberSnapshot (多版本并发控制)
+ *              that readers take without locking; finders that take a snapshot read every record from it.
+ *              Every write runs in store.compute for its id and publishes the next snapshot and the listener
+ *              callbacks under one publish lock, in version order; batch() publishes its writes as one version.
  */
 
 import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.ScoreField;
+import nuist.ghost.demo3.exception.DuplicateStudentIDException;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 @Repository
 public class MemberRepository {
 
-    private final CopyOnWriteArrayList<Member> store = new CopyOnWriteArrayList<>();
-    private long nextAvailableId() {
-        /*Get the minimum Available ID*/
-        java.util.HashSet<Long> used = new java.util.HashSet<>();
-        for (Member m : store) {
-            if (m.getId() != null && m.getId() >= 0) 
-                used.add(m.getId());
-        }
-        long id = 0;
-        while (used.contains(id)) id++;
-        return id;
-    } 
+    private final ConcurrentHashMap<Long, Member> store = new ConcurrentHashMap<>();
+    /*当前发布的版本；只在 publishLock 内替换*/
+    private volatile MemberSnapshot state = MemberSnapshot.empty(0);
+    private final Object publishLock = new Object();
+    private final ConcurrentHashMap<String, Long> studentIDIndex = new ConcurrentHashMap<>();
+    private final IdAllocator idAllocator = new IdAllocator();
+    private final KeyedIndex<String> memberTypeIndex = new KeyedIndex<>(Member::getMemberType);
+    private final KeyedIndex<Boolean> probationIndex = new KeyedIndex<>(Member::isProbation);
+    private final KeyedIndex<String> nameIndex = new KeyedIndex<>(Member::getName);
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final CopyOnWriteArrayList<MemberChangeListener> listeners = new CopyOnWriteArrayList<>();
+    /*batch 持有写锁，compareAndReplace 持有读锁：batch 进行中，其他线程的比较并替换等它结束*/
+    private final ReentrantReadWriteLock batchLock = new ReentrantReadWriteLock();
+    /*batch 内攒下、还没发布的修改，只由持有 batch 的线程读写*/
+    private final List<MemberChangeListener.Change> unpublished = new ArrayList<>();
+    /*batch 的嵌套层数，只在持有仓库锁时读写*/
+    private int batchDepth;
+    private final AtomicLong recordVersions = new AtomicLong();
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
 
     public List<Member> findAll() {
-        return store.stream().collect(Collectors.toList());
+        /*按 id 升序返回；是当前版本的只读视图，不复制*/
+        return state.members();
+    }
+
+    public long version() {
+        /*每次修改后加一*/
+        return state.version();
+    }
+
+    public long lastModified() {
+        /*最近一次修改的时间（毫秒），与 version() 一起发布*/
+        return state.modifiedAt();
+    }
+
+    public String epoch() {
+        /*本次运行的标识：记录版本号不持久化，重启后与它组合才能区分新旧版本*/
+        return epoch;
+    }
+
+    public MemberSnapshot snapshot() {
+        /*一次读取拿到版本号和对应的成员视图，O(1)，不加锁也不复制*/
+        return state;
+    }
+
+    private void publish(UnaryOperator<MemberSnapshot> change, Consumer<MemberChangeListener> event) {
+        /*
+         * 发布新版本并通知监听器，两步在同一把锁内：通知按版本号顺序逐个进行，
+         * 回调期间 version() 就是这次修改的版本号。写不同 id 的线程只在这一小段互斥
+         * batch 内调用的 deleteAll / loadAll 不攒着，先把已攒下的修改发布出去
+         */
+        synchronized (publishLock) {
+            publishUnpublished();
+            state = change.apply(state);
+            for (MemberChangeListener listener : listeners) {
+                event.accept(listener);
+            }
+        }
+    }
+
+    private boolean deferred() {
+        /*当前线程在 batch 内：修改先攒着，batch 结束时一起发布*/
+        return Thread.holdsLock(this) && batchDepth > 0;
+    }
+
+    private void defer(Member previous, Member m) {
+        unpublished.add(new MemberChangeListener.Change(previous, m));
+    }
+
+    private void publishUnpublished() {
+        /*
+         * 在 publishLock 内、由持有 batch 的线程调用：攒下的修改作为一个版本发布，监听器只通知一轮，再去掉旧的索引值
+         * 同一 id 可能改了多次，旧值要和这个 id 最后的记录比较，中间改回来的值不能删；
+         * 其他线程此时都在等 batch 结束，没有人同时修改这些 id
+         */
+        if (unpublished.isEmpty()) return;
+        List<MemberChangeListener.Change> changes = List.copyOf(unpublished);
+        unpublished.clear();
+        state = state.nextChanged(changes);
+        for (MemberChangeListener listener : listeners) {
+            listener.onChanges(changes);
+        }
+        Map<Long, Member> latest = new HashMap<>();
+        for (MemberChangeListener.Change change : changes) {
+            Member before = change.before();
+            latest.put(before != null ? before.getId() : change.after().getId(), change.after());
+        }
+        for (MemberChangeListener.Change change : changes) {
+            if (change.before() != null) {
+                unindexAttributes(change.before(), latest.get(change.before().getId()));
+            }
+        }
     }
 
     public Optional<Member> findById(long id) {
-        return store.stream().filter(m -> m.getId() != null && m.getId() == id).findFirst();
+        return Optional.ofNullable(store.get(id));
     }
 
     public Optional<Member> findByStudentID(String studentID) {
-        return store.stream().filter(m -> m.getStudentID().equals(studentID)).findFirst();
+        if (studentID == null) return Optional.empty();
+        Long id = studentIDIndex.get(studentID);
+        return id == null ? Optional.empty() : findById(id);
     }
 
-    public Member save(Member m) {
+    public synchronized Member save(Member m) {
+        String studentID = m.getStudentID();
+        if (studentID != null) {
+            Long owner = studentIDIndex.get(studentID);
+            if (owner != null && !owner.equals(m.getId())) {
+                throw new DuplicateStudentIDException("Member with studentID " + studentID + " already exists.");
+            }
+        }
         if (m.getId() == null) {
-            long id = nextAvailableId();
-            m.setId(id);
+            m.setId(idAllocator.allocate());
         } else {
-            // 如果已有 id，先删除旧的（更新语义）
-            deleteById(m.getId());
+            idAllocator.reserve(m.getId());
         }
-        store.add(m);
+        // 如果已有 id，直接覆盖旧的（更新语义）
+        store.compute(m.getId(), (id, previous) -> {
+            if (previous == m) {
+                // 索引和监听器靠修改前的记录找到旧值，原地修改后再保存会让它们对不上
+                throw new IllegalArgumentException("Saved records are immutable, save a copy instead: id=" + id);
+            }
+            if (previous != null && previous.getStudentID() != null && !previous.getStudentID().equals(studentID)) {
+                studentIDIndex.remove(previous.getStudentID(), id);
+            }
+            if (studentID != null) {
+                studentIDIndex.put(studentID, id);
+            }
+            apply(previous, m);
+            return m;
+        });
         return m;
     }
 
+    public boolean compareAndReplace(Member replacement, long expectedVersion) {
+        /*
+         * 比较并替换（CAS）：只有当前记录的版本号仍是 expectedVersion 时，才把同一 id 的记录换成 replacement
+         * 替换是一步完成的，读者要么看到旧记录，要么看到新记录，中间不会出现成员不存在的状态
+         * 学号必须不变（学号索引不受影响），因此不需要仓库锁，只等进行中的 batch 结束；返回 false 时调用方重新读取后重试
+         */
+        Long id = replacement.getId();
+        if (id == null) {
+            throw new IllegalArgumentException("replacement must have an id.");
+        }
+        batchLock.readLock().lock();
+        try {
+            return replace(id, replacement, expectedVersion);
+        } finally {
+            batchLock.readLock().unlock();
+        }
+    }
+
+    private boolean replace(long id, Member replacement, long expectedVersion) {
+        boolean[] replaced = new boolean[1];
+        store.computeIfPresent(id, (key, current) -> {
+            if (current == replacement) {
+                // 与 save 相同：原地修改已保存的记录，索引和监听器就找不到旧值了
+                throw new IllegalArgumentException("Saved records are immutable, replace with a copy instead: id=" + key);
+            }
+            if (current.getVersion() != expectedVersion) return current;
+            if (!Objects.equals(current.getStudentID(), replacement.getStudentID())) {
+                throw new IllegalArgumentException("compareAndReplace cannot change the studentID: id=" + key);
+            }
+            apply(current, replacement);
+            replaced[0] = true;
+            return replacement;
+        });
+        return replaced[0];
+    }
+
+    private void apply(Member previous, Member m) {
+        /*在 store.compute 内调用：同一 id 的修改与通知按顺序进行*/
+        m.setVersion(recordVersions.incrementAndGet());
+        if (deferred()) {
+            indexAttributes(previous, m);
+            defer(previous, m);
+            return;
+        }
+        indexAttributes(previous, m);
+        publish(s -> s.next(previous, m), listener -> listener.onChange(previous, m));
+        unindexAttributes(previous, m);
+    }
+
+    public synchronized List<Member> loadAll(Collection<Member> members) {
+        /*
+         * 启动时批量装载：一次遍历直接建立所有索引，最后一次性重建 id 分配器
+         * 不逐条通知监听器（这些成员本来就来自磁盘），最后用 onLoad 报告装载了哪些成员；
+         * 返回因 id 或学号重复而没有装载的成员
+         */
+        List<Member> rejected = new ArrayList<>();
+        List<Member> withoutId = new ArrayList<>();
+        List<Member> loaded = new ArrayList<>();
+        for (Member m : members) {
+            if (m.getId() == null) {
+                withoutId.add(m);
+                continue;
+            }
+            String studentID = m.getStudentID();
+            if (store.containsKey(m.getId()) || (studentID != null && studentIDIndex.containsKey(studentID))) {
+                rejected.add(m);
+                continue;
+            }
+            store.put(m.getId(), m);
+            loaded.add(m);
+            if (studentID != null) {
+                studentIDIndex.put(studentID, m.getId());
+            }
+            indexAttributes(null, m);
+        }
+        idAllocator.rebuild(store.keySet().stream().sorted().toList());
+        for (Member m : withoutId) {
+            if (m.getStudentID() != null && studentIDIndex.containsKey(m.getStudentID())) {
+                rejected.add(m);
+                continue;
+            }
+            m.setId(idAllocator.allocate());
+            store.put(m.getId(), m);
+            loaded.add(m);
+            if (m.getStudentID() != null) {
+                studentIDIndex.put(m.getStudentID(), m.getId());
+            }
+            indexAttributes(null, m);
+        }
+        List<Member> loadedAll = Collections.unmodifiableList(loaded);
+        publish(s -> s.nextLoaded(loadedAll), listener -> listener.onLoad(loadedAll));
+        return rejected;
+    }
+
+    /*
+     * 二级索引不分版本：新记录发布前先加入新值，发布后再去掉旧值，新快照的读者一定能从索引找到这条记录；
+     * 旧值由修改前的记录（previous）给出，索引不必按 id 另存一份
+     */
+    private void indexAttributes(Member previous, Member m) {
+        memberTypeIndex.add(previous, m);
+        probationIndex.add(previous, m);
+        nameIndex.add(previous, m);
+        searchIndex.add(previous, m);
+    }
+
+    private void unindexAttributes(Member previous, Member m) {
+        if (previous == null) return;
+        memberTypeIndex.remove(previous, m);
+        probationIndex.remove(previous, m);
+        nameIndex.remove(previous, m);
+        searchIndex.remove(previous, m);
+    }
+
+    public synchronized Optional<Member> insertIfAbsent(Member m) {
+        /*学号不存在时才插入：检查与插入是同一个原子步骤*/
+        if (m.getStudentID() == null || studentIDIndex.containsKey(m.getStudentID())) {
+            return Optional.empty();
+        }
+        return Optional.of(save(m));
+    }
+
+    public synchronized List<Member> insertAllIfAbsent(List<Member> members) {
+        /*
+         * 批量插入：整批只加一次锁，期间其他写操作不会插进来，整批作为一个版本发布
+         * 返回与参数一一对应的列表，学号已存在（或为 null）的位置是 null
+         */
+        return batch(() -> {
+            List<Member> inserted = new ArrayList<>(members.size());
+            for (Member m : members) {
+                inserted.add(m.getStudentID() == null || studentIDIndex.containsKey(m.getStudentID()) ? null : save(m));
+            }
+            return inserted;
+        });
+    }
+
+    public synchronized <T> T batch(Supplier<T> work) {
+        /*
+         * 在一次写锁内执行多步修改，其他持锁的写操作不会穿插进来（写锁可重入）
+         * 修改在最外层 batch 结束时作为一个版本发布，监听器只通知一轮（onChanges）
+         * 同时持有 batch 写锁，其他线程的 compareAndReplace 等 batch 发布后再执行
+         */
+        batchLock.writeLock().lock();
+        batchDepth++;
+        try {
+            return work.get();
+        } finally {
+            if (--batchDepth == 0) {
+                synchronized (publishLock) {
+                    publishUnpublished();
+                }
+            }
+            batchLock.writeLock().unlock();
+        }
+    }
+
     public int count() {
-        return Integer.parseInt(String.valueOf(store.size()));
+        return store.size();
     }
 
     public boolean existsByStudentID(String studentID) {
-        return store.stream().anyMatch(m -> m.getStudentID().equals(studentID));
+        return studentID != null && studentIDIndex.containsKey(studentID);
     }
 
     public boolean existsById(Long id) {
-        return store.stream().anyMatch(m -> m.getId() != null && m.getId().equals(id));
+        return id != null && store.containsKey(id);
     }
 
     public List<Member> findByName(String name) {
-        return store.stream().filter(m -> m.getName().equals(name)).collect(Collectors.toList());
+        return streamByName(snapshot(), name, null).collect(Collectors.toList());
+    }
+
+    public Stream<Member> streamByName(MemberSnapshot snapshot, String name, Long after) {
+        return resolve(snapshot, tail(nameIndex.ids(name), after), m -> Objects.equals(m.getName(), name));
     }
 
     public List<Member> findByIsProbation(boolean isProbation) {
-        return store.stream().filter(m -> m.isProbation() == isProbation).collect(Collectors.toList());
+        return streamByIsProbation(snapshot(), isProbation, null).collect(Collectors.toList());
+    }
+
+    public Stream<Member> streamByIsProbation(MemberSnapshot snapshot, boolean isProbation, Long after) {
+        return resolve(snapshot, tail(probationIndex.ids(isProbation), after), m -> m.isProbation() == isProbation);
     }
 
     public List<Member> findByInternshipScoreGreaterThan(double score) {
-        return store.stream().filter(m -> m.getInternshipScore() > score).collect(Collectors.toList());
+        return findByScoreBetween(ScoreField.INTERNSHIP, score, false, Double.POSITIVE_INFINITY, true);
+    }
+
+    public List<Member> findByScoreBetween(ScoreField field, double min, boolean minInclusive,
+                                           double max, boolean maxInclusive) {
+        return streamByScoreBetween(snapshot(), field, min, minInclusive, max, maxInclusive, null, null)
+                .collect(Collectors.toList());
+    }
+
+    public Stream<Member> streamByScoreBetween(MemberSnapshot snapshot, ScoreField field, double min, boolean minInclusive,
+                                               double max, boolean maxInclusive, Double afterScore, Long after) {
+        /*
+         * 分数区间查询，分数从高到低、同分按 id 升序；游标是上一页最后一个成员的 (分数, id)，
+         * 直接在分数索引里定位，每页 O(log n + 页大小)。分数索引与快照一起发布，不用再校验
+         */
+        return snapshot.scores(field).streamBetween(min, minInclusive, max, maxInclusive, afterScore, after);
     }
 
     public List<Member> findByMemberType(String position) {
-        return store.stream().filter(m -> m.getMemberType().equals(position)).collect(Collectors.toList());
+        return streamByMemberType(snapshot(), position, null).collect(Collectors.toList());
+    }
+
+    public Stream<Member> streamByMemberType(MemberSnapshot snapshot, String position, Long after) {
+        return resolve(snapshot, tail(memberTypeIndex.ids(position), after), m -> m.getMemberType().equals(position));
+    }
+
+    private static NavigableSet<Long> tail(NavigableSet<Long> ids, Long after) {
+        return after == null ? ids : ids.tailSet(after, false);
+    }
+
+    /*
+     * 供查询规划使用的基数：按职位 / 是否实习期 / 姓名为 O(1)；
+     * 姓名片段为候选集大小（上界）；分数区间为快照中的精确行数，O(log n)
+     */
+    public int countByMemberType(String memberType) {
+        return memberTypeIndex.count(memberType);
+    }
+
+    public int countByIsProbation(boolean isProbation) {
+        return probationIndex.count(isProbation);
+    }
+
+    public int countByName(String name) {
+        return nameIndex.count(name);
     }
 
-    public void deleteById(Long id) {
-        store.removeIf(m -> m.getId() != null && m.getId().equals(id));
+    public int countByNameContaining(String fragment) {
+        return searchIndex.nameCandidates(fragment).size();
+    }
+
+    public int countByScoreBetween(MemberSnapshot snapshot, ScoreField field, double min, double max) {
+        return snapshot.scores(field).countBetween(min, true, max, true);
+    }
+
+    /*
+     * 排行榜：isProbation 为 null 时是全体成员，true / false 分别是实习期 / 正式成员
+     * 前 k 名 O(log n + k)，某个成员的名次 O(log n)
+     */
+    public List<RankedMember> topByScore(MemberSnapshot snapshot, ScoreField field, Boolean isProbation, int k) {
+        return snapshot.scores(field).top(isProbation, k);
+    }
+
+    public Optional<RankedMember> rankByScore(MemberSnapshot snapshot, ScoreField field, Boolean isProbation, long id) {
+        Member m = snapshot.get(id);
+        return m == null ? Optional.empty() : Optional.ofNullable(snapshot.scores(field).rank(m, isProbation));
+    }
+
+    public Stream<Member> streamByNameContaining(MemberSnapshot snapshot, String fragment) {
+        /*姓名包含 fragment（忽略大小写、全半角）的成员，按 id 升序*/
+        List<Long> ids = new ArrayList<>(searchIndex.nameCandidates(fragment));
+        ids.sort(null);
+        return resolve(snapshot, ids, nameContaining(fragment));
+    }
+
+    public static Predicate<Member> nameContaining(String fragment) {
+        String q = SearchIndex.normalize(fragment);
+        return m -> {
+            String name = SearchIndex.normalize(m.getName());
+            return q != null && name != null && name.contains(q);
+        };
+    }
+
+    public List<Member> search(MemberSnapshot snapshot, String query, boolean names, boolean studentIDs, int limit) {
+        /*姓名子串 / 学号前缀搜索，按相关度排序取前 limit 个（完全匹配 > 前缀 > 子串）*/
+        List<Member> result = new ArrayList<>();
+        for (SearchIndex.Hit hit : searchIndex.search(query, names, studentIDs, limit, snapshot::get)) {
+            result.add(hit.member());
+        }
+        return result;
+    }
+
+    private static Stream<Member> resolve(MemberSnapshot snapshot, Collection<Long> ids, Predicate<Member> stillMatches) {
+        /*
+         * 根据索引中的 id 惰性地从快照取出成员；索引不分版本，可能已经含有比快照新的修改，
+         * 所以再按快照里的记录校验一次条件
+         */
+        return ids.stream()
+                .map(snapshot::get)
+                .filter(m -> m != null && stillMatches.test(m));
+    }
+
+    public synchronized void deleteById(Long id) {
+        if (id == null) return;
+        boolean[] removedAny = new boolean[1];
+        store.computeIfPresent(id, (key, removed) -> {
+            if (removed.getStudentID() != null) {
+                studentIDIndex.remove(removed.getStudentID(), key);
+            }
+            if (deferred()) {
+                defer(removed, null);
+            } else {
+                publish(s -> s.next(removed, null), listener -> listener.onChange(removed, null));
+                unindexAttributes(removed, null);
+            }
+            removedAny[0] = true;
+            return null;
+        });
+        if (removedAny[0]) {
+            idAllocator.release(id);
+        }
     }
 
     public void saveAll(List<Member> members) {
@@ -92,8 +486,23 @@ public class MemberRepository {
         }
     }
 
-    public void deleteAll() {
+    public synchronized void deleteAll() {
         store.clear();
+        studentIDIndex.clear();
+        memberTypeIndex.clear();
+        probationIndex.clear();
+        nameIndex.clear();
+        searchIndex.clear();
+        idAllocator.reset();
+        publish(MemberSnapshot::nextCleared, MemberChangeListener::onClear);
+    }
+
+    public void addChangeListener(MemberChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(MemberChangeListener listener) {
+        listeners.remove(listener);
     }
 
 
@@ -0,0 +1,113 @@
+package nuist.ghost.demo3.repository;
+/**
+ * @description A point-in-time view of the repository (某一时刻的成员快照).
+ *              version is the repository modification count the view corresponds to,
+ *              modifiedAt the time (epoch millis) of that modification;
+ *              members are in id order and the list is read-only.
+ *              The snapshot is the state MemberRepository publishes, not a copy of it. Every record read
+ *              through it (members, findById, and the repository finders that take a snapshot) is the
+ *              record of exactly this version, so a response tagged with version() never carries an
+ *              older record than its tag.
+ *              The ScoreIndex of every score field is published with the members, so leaderboards and score
+ *              ranges are read from exactly the same records.
+ */
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.ScoreField;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public final class MemberSnapshot {
+
+    private final long version;
+    private final long modifiedAt;
+    private final PersistentIdMap<Member> members;
+    private final EnumMap<ScoreField, ScoreIndex> scores;
+
+    private MemberSnapshot(long version, long modifiedAt, PersistentIdMap<Member> members,
+                           EnumMap<ScoreField, ScoreIndex> scores) {
+        this.version = version;
+        this.modifiedAt = modifiedAt;
+        this.members = members;
+        this.scores = scores;
+    }
+
+    static MemberSnapshot empty(long version) {
+        EnumMap<ScoreField, ScoreIndex> scores = new EnumMap<>(ScoreField.class);
+        for (ScoreField field : ScoreField.values()) {
+            scores.put(field, ScoreIndex.empty(field));
+        }
+        return new MemberSnapshot(version, System.currentTimeMillis(), PersistentIdMap.empty(), scores);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public long modifiedAt() {
+        return modifiedAt;
+    }
+
+    public List<Member> members() {
+        /*按 id 升序的只读视图，不复制*/
+        return members.values();
+    }
+
+    public Optional<Member> findById(long id) {
+        return Optional.ofNullable(members.get(id));
+    }
+
+    public Stream<Member> streamAfter(Long after) {
+        /*按 id 升序惰性遍历 id 大于 after 的成员*/
+        return members.streamAfter(after);
+    }
+
+    Member get(long id) {
+        return members.get(id);
+    }
+
+    ScoreIndex scores(ScoreField field) {
+        return scores.get(field);
+    }
+
+    MemberSnapshot next(Member before, Member after) {
+        /*下一个版本：一条记录的修改（before / after 为 null 表示新增 / 删除），版本号加一，修改时间为现在*/
+        PersistentIdMap<Member> nextMembers = after != null
+                ? members.put(after.getId(), after) : members.remove(before.getId());
+        EnumMap<ScoreField, ScoreIndex> nextScores = new EnumMap<>(ScoreField.class);
+        scores.forEach((field, index) -> nextScores.put(field, index.move(before, after)));
+        return new MemberSnapshot(version + 1, System.currentTimeMillis(), nextMembers, nextScores);
+    }
+
+    MemberSnapshot nextChanged(List<MemberChangeListener.Change> changes) {
+        /*一批修改作为一个版本发布*/
+        PersistentIdMap<Member> nextMembers = members;
+        EnumMap<ScoreField, ScoreIndex> nextScores = new EnumMap<>(scores);
+        for (MemberChangeListener.Change change : changes) {
+            Member before = change.before();
+            Member after = change.after();
+            nextMembers = after != null ? nextMembers.put(after.getId(), after) : nextMembers.remove(before.getId());
+            nextScores.replaceAll((field, index) -> index.move(before, after));
+        }
+        return new MemberSnapshot(version + 1, System.currentTimeMillis(), nextMembers, nextScores);
+    }
+
+    MemberSnapshot nextLoaded(Collection<Member> loaded) {
+        /*批量装载作为一个版本发布*/
+        PersistentIdMap<Member> nextMembers = members;
+        EnumMap<ScoreField, ScoreIndex> nextScores = new EnumMap<>(scores);
+        for (Member m : loaded) {
+            nextMembers = nextMembers.put(m.getId(), m);
+            nextScores.replaceAll((field, index) -> index.move(null, m));
+        }
+        return new MemberSnapshot(version + 1, System.currentTimeMillis(), nextMembers, nextScores);
+    }
+
+    MemberSnapshot nextCleared() {
+        return empty(version + 1);
+    }
+}
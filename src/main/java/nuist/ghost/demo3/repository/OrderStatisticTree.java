@@ -0,0 +1,274 @@
+package nuist.ghost.demo3.repository;
+/**
+ * @description Immutable order-statistic tree (持久化 AVL 树，节点记录子树大小).
+ *              Ordered by key, or by score (high to low) then key; put / remove copy one path in O(log n).
+ *              Positions and entries map to each other in O(log n) (indexOf / countBefore / select).
+ */
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ToDoubleFunction;
+
+final class OrderStatisticTree<V> {
+
+    private record Node<V>(long key, V value, Node<V> left, Node<V> right, int height, int size) {
+    }
+
+    /*null 表示只按 key 升序*/
+    private final ToDoubleFunction<? super V> score;
+    private final Node<V> root;
+
+    private OrderStatisticTree(ToDoubleFunction<? super V> score, Node<V> root) {
+        this.score = score;
+        this.root = root;
+    }
+
+    static <V> OrderStatisticTree<V> byKey() {
+        return new OrderStatisticTree<>(null, null);
+    }
+
+    static <V> OrderStatisticTree<V> byScore(ToDoubleFunction<? super V> score) {
+        /*分数高的在前，同分 key 小的在前*/
+        return new OrderStatisticTree<>(score, null);
+    }
+
+    int size() {
+        return sizeOf(root);
+    }
+
+    V find(long key) {
+        /*只用于按 key 排序的树*/
+        Node<V> node = root;
+        while (node != null) {
+            if (key < node.key) node = node.left;
+            else if (key > node.key) node = node.right;
+            else return node.value;
+        }
+        return null;
+    }
+
+    OrderStatisticTree<V> put(long key, V value) {
+        /*位置相同的条目被替换*/
+        return new OrderStatisticTree<>(score, put(root, scoreOf(value), key, value));
+    }
+
+    OrderStatisticTree<V> remove(long key, V value) {
+        /*value 只用来确定位置，按 key 排序的树可以传 null；不存在时返回自身*/
+        Node<V> newRoot = remove(root, scoreOf(value), key);
+        return newRoot == root ? this : new OrderStatisticTree<>(score, newRoot);
+    }
+
+    int indexOf(long key, V value) {
+        /*条目的中序位置；不存在时返回 -(插入位置) - 1*/
+        double s = scoreOf(value);
+        Node<V> node = root;
+        int before = 0;
+        while (node != null) {
+            int c = compare(s, key, node);
+            if (c < 0) {
+                node = node.left;
+            } else if (c > 0) {
+                before += sizeOf(node.left) + 1;
+                node = node.right;
+            } else {
+                return before + sizeOf(node.left);
+            }
+        }
+        return -before - 1;
+    }
+
+    int countBefore(double score, long key) {
+        /*排在 (score, key) 之前的条数，沿一条路径下行；按 key 排序的树忽略 score*/
+        return countBefore(score, key, false);
+    }
+
+    int countBefore(double score, long key, boolean inclusive) {
+        /*inclusive 时位置恰好是 (score, key) 的条目也算在内*/
+        Node<V> node = root;
+        int before = 0;
+        while (node != null) {
+            int c = compare(score, key, node);
+            if (c > 0 || (inclusive && c == 0)) {
+                before += sizeOf(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return before;
+    }
+
+    V select(int index) {
+        if (index < 0 || index >= sizeOf(root)) throw new IndexOutOfBoundsException(index);
+        Node<V> node = root;
+        while (true) {
+            int leftSize = sizeOf(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    Iterator<V> values(int from) {
+        /*从第 from 个条目开始按顺序遍历；定位 O(log n)，之后每步均摊 O(1)*/
+        InOrder<V> it = new InOrder<>(root, from);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public V next() {
+                return it.next().value;
+            }
+        };
+    }
+
+    Iterator<Long> keys(int from) {
+        InOrder<V> it = new InOrder<>(root, from);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Long next() {
+                return it.next().key;
+            }
+        };
+    }
+
+    void copyInto(Object[] values) {
+        fill(root, values, 0);
+    }
+
+    private static int fill(Node<?> node, Object[] values, int index) {
+        /*中序写入数组，返回下一个空位；递归深度为树高 O(log n)*/
+        while (node != null) {
+            index = fill(node.left, values, index);
+            values[index++] = node.value;
+            node = node.right;
+        }
+        return index;
+    }
+
+    private static final class InOrder<V> {
+        /*栈里放的是还没访问的祖先*/
+        private final ArrayDeque<Node<V>> stack = new ArrayDeque<>();
+
+        InOrder(Node<V> node, int from) {
+            while (node != null) {
+                int leftSize = sizeOf(node.left);
+                if (from <= leftSize) {
+                    stack.push(node);
+                    node = node.left;
+                } else {
+                    from -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        Node<V> next() {
+            if (stack.isEmpty()) throw new NoSuchElementException();
+            Node<V> next = stack.pop();
+            for (Node<V> node = next.right; node != null; node = node.left) {
+                stack.push(node);
+            }
+            return next;
+        }
+    }
+
+    private double scoreOf(V value) {
+        return score == null ? 0 : score.applyAsDouble(value);
+    }
+
+    private int compare(double s, long key, Node<V> node) {
+        /*(s, key) 排在 node 之前为负*/
+        if (score != null) {
+            int byScore = Double.compare(score.applyAsDouble(node.value), s);
+            if (byScore != 0) return byScore;
+        }
+        return Long.compare(key, node.key);
+    }
+
+    private static int sizeOf(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int heightOf(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <V> Node<V> node(long key, V value, Node<V> left, Node<V> right) {
+        return new Node<>(key, value, left, right, Math.max(heightOf(left), heightOf(right)) + 1,
+                sizeOf(left) + sizeOf(right) + 1);
+    }
+
+    private Node<V> put(Node<V> node, double s, long key, V value) {
+        if (node == null) return node(key, value, null, null);
+        int c = compare(s, key, node);
+        if (c < 0) return balance(node.key, node.value, put(node.left, s, key, value), node.right);
+        if (c > 0) return balance(node.key, node.value, node.left, put(node.right, s, key, value));
+        return node(key, value, node.left, node.right);
+    }
+
+    private Node<V> remove(Node<V> node, double s, long key) {
+        if (node == null) return null;
+        int c = compare(s, key, node);
+        if (c < 0) {
+            Node<V> left = remove(node.left, s, key);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        }
+        if (c > 0) {
+            Node<V> right = remove(node.right, s, key);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+        // 用右子树的第一个节点顶替被删除的节点
+        Node<V> successor = node.right;
+        while (successor.left != null) successor = successor.left;
+        return balance(successor.key, successor.value, node.left, removeFirst(node.right));
+    }
+
+    private static <V> Node<V> removeFirst(Node<V> node) {
+        if (node.left == null) return node.right;
+        return balance(node.key, node.value, removeFirst(node.left), node.right);
+    }
+
+    private static <V> Node<V> balance(long key, V value, Node<V> left, Node<V> right) {
+        int diff = heightOf(left) - heightOf(right);
+        if (diff > 1) {
+            if (heightOf(left.left) >= heightOf(left.right)) {
+                return node(left.key, left.value, left.left, node(key, value, left.right, right));
+            }
+            Node<V> pivot = left.right;
+            return node(pivot.key, pivot.value,
+                    node(left.key, left.value, left.left, pivot.left),
+                    node(key, value, pivot.right, right));
+        }
+        if (diff < -1) {
+            if (heightOf(right.right) >= heightOf(right.left)) {
+                return node(right.key, right.value, node(key, value, left, right.left), right.right);
+            }
+            Node<V> pivot = right.left;
+            return node(pivot.key, pivot.value,
+                    node(key, value, left, pivot.left),
+                    node(right.key, right.value, pivot.right, right.right));
+        }
+        return node(key, value, left, right);
+    }
+}
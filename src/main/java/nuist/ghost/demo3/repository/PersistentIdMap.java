@@ -0,0 +1,141 @@
+package nuist.ghost.demo3.repository;
+/**
+ * @description Immutable, id-ordered map over an OrderStatisticTree (持久化 AVL 树，结构共享).
+ *              put / remove return a new map in O(log n); values() is a List view.
+ *              Each version is flattened into an array at most once (每个版本最多展开一次).
+ */
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+final class PersistentIdMap<V> {
+
+    private static final PersistentIdMap<?> EMPTY = new PersistentIdMap<>(OrderStatisticTree.byKey());
+
+    private final OrderStatisticTree<V> tree;
+    private volatile Object[] flattened;
+
+    /*从已展开的父版本派生数组所需的信息：父版本的数组、变化位置、变化类型、新值*/
+    private static final int REPLACED = 0;
+    private static final int INSERTED = 1;
+    private static final int REMOVED = -1;
+
+    private record Derivation<V>(Object[] from, int index, int change, V value) {
+    }
+
+    private volatile Derivation<V> derivation;
+
+    private PersistentIdMap(OrderStatisticTree<V> tree) {
+        this.tree = tree;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentIdMap<V> empty() {
+        return (PersistentIdMap<V>) EMPTY;
+    }
+
+    int size() {
+        return tree.size();
+    }
+
+    V get(long key) {
+        return tree.find(key);
+    }
+
+    PersistentIdMap<V> put(long key, V value) {
+        PersistentIdMap<V> next = new PersistentIdMap<>(tree.put(key, value));
+        if (flattened != null) {
+            int index = tree.indexOf(key, null);
+            next.derive(this, index >= 0 ? index : -index - 1, index >= 0 ? REPLACED : INSERTED, value);
+        }
+        return next;
+    }
+
+    PersistentIdMap<V> remove(long key) {
+        OrderStatisticTree<V> removed = tree.remove(key, null);
+        if (removed == tree) return this;
+        PersistentIdMap<V> next = new PersistentIdMap<>(removed);
+        if (flattened != null) {
+            next.derive(this, tree.indexOf(key, null), REMOVED, null);
+        }
+        return next;
+    }
+
+    private void derive(PersistentIdMap<V> parent, int index, int change, V value) {
+        this.derivation = new Derivation<>(parent.flattened, index, change, value);
+    }
+
+    List<V> values() {
+        /*不复制的只读视图*/
+        return new AbstractList<>() {
+            @Override
+            public V get(int index) {
+                return tree.select(index);
+            }
+
+            @Override
+            public int size() {
+                return tree.size();
+            }
+
+            @Override
+            public Iterator<V> iterator() {
+                return flattened().iterator();
+            }
+
+            @Override
+            public Spliterator<V> spliterator() {
+                return flattened().spliterator();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<V> flattened() {
+        /*并发时可能有两个线程同时展开，结果相同，无需加锁*/
+        Object[] values = flattened;
+        if (values == null) {
+            Derivation<V> d = derivation;
+            values = new Object[tree.size()];
+            if (d != null) {
+                Object[] from = d.from();
+                int i = d.index();
+                if (d.change() == REPLACED) {
+                    System.arraycopy(from, 0, values, 0, from.length);
+                    values[i] = d.value();
+                } else if (d.change() == INSERTED) {
+                    System.arraycopy(from, 0, values, 0, i);
+                    values[i] = d.value();
+                    System.arraycopy(from, i, values, i + 1, from.length - i);
+                } else {
+                    System.arraycopy(from, 0, values, 0, i);
+                    System.arraycopy(from, i + 1, values, i, from.length - i - 1);
+                }
+            } else {
+                tree.copyInto(values);
+            }
+            flattened = values;
+            derivation = null;
+        }
+        return (List<V>) Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    Stream<V> streamAfter(Long after) {
+        /*按 id 升序遍历 id 大于 after 的值（after 为 null 时从头开始）*/
+        int from = after == null ? 0 : tree.countBefore(0, after, true);
+        Iterator<V> it = tree.values(from);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    Iterable<Long> keys() {
+        return () -> tree.keys(0);
+    }
+}
@@ -0,0 +1,11 @@
+package nuist.ghost.demo3.repository;
+/**
+ * @description One leaderboard row (排行榜中的一名成员).
+ *              rank starts at 1 and equal scores share a rank; score is the score the member is ranked by;
+ *              outOf is how many members the leaderboard had when the row was read.
+ */
+
+import nuist.ghost.demo3.entities.Member;
+
+public record RankedMember(int rank, double score, int outOf, Member member) {
+}
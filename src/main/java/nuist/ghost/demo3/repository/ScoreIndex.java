@@ -0,0 +1,161 @@
+package nuist.ghost.demo3.repository;
+/**
+ * @description Score order of the members for one score field (分数索引：排行榜和分数区间查询共用).
+ *              Interns and official members sit in two OrderStatisticTrees, highest score first, then by id;
+ *              the index is published with every MemberSnapshot.
+ *              top(k) is O(log n + k), rank and range counts O(log n); ranks are competition ranks (1, 2, 2, 4).
+ */
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.ScoreField;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+final class ScoreIndex {
+
+    private final ScoreField field;
+    private final OrderStatisticTree<Member> interns;
+    private final OrderStatisticTree<Member> officials;
+
+    private ScoreIndex(ScoreField field, OrderStatisticTree<Member> interns, OrderStatisticTree<Member> officials) {
+        this.field = field;
+        this.interns = interns;
+        this.officials = officials;
+    }
+
+    static ScoreIndex empty(ScoreField field) {
+        OrderStatisticTree<Member> tree = OrderStatisticTree.byScore(field::of);
+        return new ScoreIndex(field, tree, tree);
+    }
+
+    ScoreIndex move(Member before, Member after) {
+        /*before / after 为 null 表示新增 / 删除；记录不可变，before 就是当初放进树里的那条*/
+        OrderStatisticTree<Member> nextInterns = interns;
+        OrderStatisticTree<Member> nextOfficials = officials;
+        if (before != null) {
+            if (before.isProbation()) nextInterns = nextInterns.remove(before.getId(), before);
+            else nextOfficials = nextOfficials.remove(before.getId(), before);
+        }
+        if (after != null) {
+            if (after.isProbation()) nextInterns = nextInterns.put(after.getId(), after);
+            else nextOfficials = nextOfficials.put(after.getId(), after);
+        }
+        return new ScoreIndex(field, nextInterns, nextOfficials);
+    }
+
+    int size(Boolean probation) {
+        return probation == null ? interns.size() + officials.size() : tree(probation).size();
+    }
+
+    List<RankedMember> top(Boolean probation, int k) {
+        /*probation 为 null 时是全体成员：两棵树边遍历边归并*/
+        int outOf = size(probation);
+        Iterator<Member> it = probation == null
+                ? merge(interns.values(0), officials.values(0)) : tree(probation).values(0);
+        List<RankedMember> result = new ArrayList<>(Math.min(k, outOf));
+        while (result.size() < k && it.hasNext()) {
+            Member m = it.next();
+            double score = field.of(m);
+            int rank = result.size() + 1;
+            if (!result.isEmpty() && Double.compare(result.get(result.size() - 1).score(), score) == 0) {
+                rank = result.get(result.size() - 1).rank();
+            }
+            result.add(new RankedMember(rank, score, outOf, m));
+        }
+        return result;
+    }
+
+    RankedMember rank(Member m, Boolean probation) {
+        /*m 是本快照里的记录；不在这个范围内时返回 null*/
+        if (probation != null && probation != m.isProbation()) return null;
+        double score = field.of(m);
+        int higher = probation == null
+                ? interns.countBefore(score, Long.MIN_VALUE) + officials.countBefore(score, Long.MIN_VALUE)
+                : tree(probation).countBefore(score, Long.MIN_VALUE);
+        return new RankedMember(higher + 1, score, size(probation), m);
+    }
+
+    int countBetween(double min, boolean minInclusive, double max, boolean maxInclusive) {
+        return count(interns, min, minInclusive, max, maxInclusive) + count(officials, min, minInclusive, max, maxInclusive);
+    }
+
+    Stream<Member> streamBetween(double min, boolean minInclusive, double max, boolean maxInclusive,
+                                 Double afterScore, Long afterId) {
+        /*
+         * 区间内的成员，分数从高到低，同分按 id 升序；给出游标 (afterScore, afterId) 时
+         * 从排在它之后的成员开始（游标本身不必还在区间或索引里）
+         */
+        int internsFrom = from(interns, max, maxInclusive, afterScore, afterId);
+        int officialsFrom = from(officials, max, maxInclusive, afterScore, afterId);
+        Iterator<Member> it = merge(interns.values(internsFrom), officials.values(officialsFrom));
+        // 区间外的成员分数都更低，排在区间内所有成员之后，所以归并结果的前 count 个正好是剩下的区间
+        int count = Math.max(0, end(interns, min, minInclusive) - internsFrom)
+                + Math.max(0, end(officials, min, minInclusive) - officialsFrom);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false).limit(count);
+    }
+
+    private OrderStatisticTree<Member> tree(boolean probation) {
+        return probation ? interns : officials;
+    }
+
+    /*树内顺序是分数从高到低：分数区间 [min, max] 对应的位置区间是 [first(max), end(min))*/
+    private static int first(OrderStatisticTree<Member> tree, double max, boolean maxInclusive) {
+        return tree.countBefore(max, maxInclusive ? Long.MIN_VALUE : Long.MAX_VALUE);
+    }
+
+    private static int end(OrderStatisticTree<Member> tree, double min, boolean minInclusive) {
+        return tree.countBefore(min, minInclusive ? Long.MAX_VALUE : Long.MIN_VALUE);
+    }
+
+    private static int from(OrderStatisticTree<Member> tree, double max, boolean maxInclusive,
+                            Double afterScore, Long afterId) {
+        int first = first(tree, max, maxInclusive);
+        if (afterScore == null || afterId == null) return first;
+        return Math.max(first, tree.countBefore(afterScore, afterId, true));
+    }
+
+    private static int count(OrderStatisticTree<Member> tree, double min, boolean minInclusive,
+                             double max, boolean maxInclusive) {
+        return Math.max(0, end(tree, min, minInclusive) - first(tree, max, maxInclusive));
+    }
+
+    private Iterator<Member> merge(Iterator<Member> a, Iterator<Member> b) {
+        /*两个有序序列按（分数降序, id 升序）归并*/
+        return new Iterator<>() {
+            private Member nextA = a.hasNext() ? a.next() : null;
+            private Member nextB = b.hasNext() ? b.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return nextA != null || nextB != null;
+            }
+
+            @Override
+            public Member next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Member result;
+                if (nextB == null || (nextA != null && before(nextA, nextB))) {
+                    result = nextA;
+                    nextA = a.hasNext() ? a.next() : null;
+                } else {
+                    result = nextB;
+                    nextB = b.hasNext() ? b.next() : null;
+                }
+                return result;
+            }
+        };
+    }
+
+    private boolean before(Member x, Member y) {
+        int byScore = Double.compare(field.of(y), field.of(x));
+        return byScore != 0 ? byScore < 0 : x.getId() < y.getId();
+    }
+}
@@ -0,0 +1,279 @@
+package nuist.ghost.demo3.repository;
+/**
+ * @description Search-as-you-type index over names and studentIDs (输入即搜索索引).
+ *              Names are indexed by character unigrams and bigrams plus a sorted map of normalized names;
+ *              studentIDs by a sorted map for prefix scans.
+ *              Results are ranked exact > prefix > substring, then shorter text, text and id.
+ */
+
+import nuist.ghost.demo3.entities.Member;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongFunction;
+
+final class SearchIndex {
+
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int SUBSTRING = 2;
+    /*一次搜索最多排序的子串候选数；完全匹配和前缀匹配不受限制*/
+    static final int MAX_SCANNED_SUBSTRINGS = 5_000;
+
+    /*建索引时的姓名和规范化后的姓名；同一条记录的所有 n-gram 共用一个*/
+    private record Text(String name, String normalized) {
+    }
+
+    /*有序姓名表的一项；按 normalized 和 id 比较，text 不参与*/
+    private record Posting(String normalized, long id, Text text) {
+    }
+
+    private static final Comparator<Posting> POSTING_ORDER = Comparator.comparing(Posting::normalized)
+            .thenComparingLong(Posting::id);
+
+    /*一条命中：rank 越小越靠前，text 为命中的姓名（已规范化）或学号*/
+    record Hit(Member member, int rank, String text) {
+        long id() {
+            return member.getId();
+        }
+    }
+
+    private static final Comparator<Hit> ORDER = Comparator.comparingInt(Hit::rank)
+            .thenComparingInt(hit -> hit.text().length())
+            .thenComparing(Hit::text)
+            .thenComparingLong(Hit::id);
+
+    /*单字和相邻两字 -> id：中文姓名没有词边界，按字切分才能搜到任意片段*/
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Long, Text>> grams = new ConcurrentHashMap<>();
+    /*按 (规范化姓名, id) 排序：完全匹配和前缀匹配是一次范围扫描*/
+    private final ConcurrentSkipListSet<Posting> sortedNames = new ConcurrentSkipListSet<>(POSTING_ORDER);
+    private final ConcurrentSkipListMap<String, Long> studentIDs = new ConcurrentSkipListMap<>();
+
+    static String normalize(String text) {
+        if (text == null) return null;
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).strip().toLowerCase(Locale.ROOT);
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    private static String normalizeQuery(String query) {
+        /*学号按原样索引（学号唯一，不能合并大小写），查询时只把全角数字等转成半角*/
+        if (query == null) return null;
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFKC).strip();
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    void add(Member before, Member after) {
+        /*发布新记录之前调用：加入 after 的姓名 n-gram 和学号（before 为 null 表示新增）*/
+        long id = after.getId();
+        String text = normalize(after.getName());
+        // 规范化后相同、原文不同（如只改了大小写）时也要重新加入，倒排表里存的原文要跟着换
+        if (text != null && (before == null || !after.getName().equals(before.getName()))) {
+            Text posted = new Text(after.getName(), text.equals(after.getName()) ? after.getName() : text);
+            for (String gram : gramsOf(text)) {
+                addPosting(gram, id, posted);
+            }
+            // 先删后加：只改了大小写时旧的一项与新的一项相等，add 不会替换它
+            Posting entry = new Posting(text, id, posted);
+            sortedNames.remove(entry);
+            sortedNames.add(entry);
+        }
+        String studentID = after.getStudentID();
+        if (studentID != null && (before == null || !studentID.equals(before.getStudentID()))) {
+            studentIDs.put(studentID, id);
+        }
+    }
+
+    void remove(Member before, Member after) {
+        /*发布之后调用：去掉 before 有而 after 没有的 n-gram 和学号（after 为 null 表示删除）*/
+        long id = before.getId();
+        String previous = normalize(before.getName());
+        String text = after == null ? null : normalize(after.getName());
+        if (previous != null && !previous.equals(text)) {
+            Set<String> kept = text == null ? Set.of() : gramsOf(text);
+            for (String gram : gramsOf(previous)) {
+                if (!kept.contains(gram)) removePosting(gram, id);
+            }
+            sortedNames.remove(new Posting(previous, id, null));
+        }
+        String previousKey = before.getStudentID();
+        if (previousKey != null && (after == null || !previousKey.equals(after.getStudentID()))) {
+            studentIDs.remove(previousKey, id);
+        }
+    }
+
+    void clear() {
+        grams.clear();
+        sortedNames.clear();
+        studentIDs.clear();
+    }
+
+    private void addPosting(String gram, long id, Text text) {
+        /*
+         * 在 compute 内加入：先 computeIfAbsent 再 put 时，另一个成员的 removePosting 可能刚好
+         * 把同一个空列表从 map 中移除，这次加入就丢了（与 KeyedIndex.add 相同的做法）
+         */
+        grams.compute(gram, (g, ids) -> {
+            if (ids == null) ids = new ConcurrentHashMap<>();
+            ids.put(id, text);
+            return ids;
+        });
+    }
+
+    private void removePosting(String gram, long id) {
+        // 空列表直接丢弃，和 KeyedIndex 一样避免堆积
+        grams.computeIfPresent(gram, (g, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private static Set<String> gramsOf(String text) {
+        /*按码点切分，避免把生僻字的代理对拆开*/
+        int[] codePoints = text.codePoints().toArray();
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i < codePoints.length; i++) {
+            result.add(new String(codePoints, i, 1));
+            if (i + 1 < codePoints.length) {
+                result.add(new String(codePoints, i, 2));
+            }
+        }
+        return result;
+    }
+
+    List<Hit> search(String query, boolean names, boolean studentIDs, int limit, LongFunction<Member> records) {
+        /*records 按 id 取调用方快照里的记录，候选的姓名 / 学号以它为准*/
+        String q = normalize(query);
+        String rawQuery = normalizeQuery(query);
+        if (q == null || limit <= 0) return List.of();
+        /*
+         * 大小有界的最大堆，O(n log k)。同一成员可能姓名和学号都命中（学号命中最多 limit 条），
+         * 所以堆里多留这么多位置，去重后仍然够 limit 个不同成员
+         */
+        List<Hit> studentIDHits = studentIDs ? searchStudentIDs(rawQuery, limit, records) : List.of();
+        int capacity = limit + studentIDHits.size();
+        PriorityQueue<Hit> heap = new PriorityQueue<>(ORDER.reversed());
+        for (Hit hit : studentIDHits) {
+            offer(heap, hit, capacity);
+        }
+        if (names) {
+            searchNames(q, heap, capacity, records);
+        }
+        List<Hit> sorted = new ArrayList<>(heap);
+        sorted.sort(ORDER);
+        List<Hit> result = new ArrayList<>(limit);
+        Set<Long> seen = new HashSet<>();
+        for (Hit hit : sorted) {
+            if (result.size() < limit && seen.add(hit.id())) result.add(hit);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static void offer(PriorityQueue<Hit> heap, Hit hit, int capacity) {
+        if (heap.size() < capacity) {
+            heap.add(hit);
+        } else if (ORDER.compare(hit, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(hit);
+        }
+    }
+
+    Set<Long> nameCandidates(String fragment) {
+        /*姓名可能包含 fragment 的 id（超集，需再用 contains 校验）；只读*/
+        String q = normalize(fragment);
+        return q == null ? Set.of() : Collections.unmodifiableSet(candidates(q).keySet());
+    }
+
+    private Map<Long, Text> candidates(String q) {
+        /*代价取决于最少见的那个字或两字组合，而不是名单大小*/
+        int[] codePoints = q.codePoints().toArray();
+        if (codePoints.length == 1) {
+            Map<Long, Text> ids = grams.get(q);
+            return ids == null ? Map.of() : ids;
+        }
+        // 取最短的二元组倒排表，其余条件交给 contains 校验
+        Map<Long, Text> candidates = null;
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            Map<Long, Text> ids = grams.get(new String(codePoints, i, 2));
+            if (ids == null) return Map.of();
+            if (candidates == null || ids.size() < candidates.size()) candidates = ids;
+        }
+        return candidates;
+    }
+
+    private void searchNames(String q, PriorityQueue<Hit> heap, int capacity, LongFunction<Member> records) {
+        /*
+         * 先在有序姓名表上取全部完全匹配和前缀匹配，再看子串匹配；
+         * 堆已被更靠前的命中占满时不再看子串，否则最多看 MAX_SCANNED_SUBSTRINGS 个子串候选
+         */
+        Posting from = new Posting(q, Long.MIN_VALUE, null);
+        Posting to = new Posting(q + Character.MAX_VALUE, Long.MIN_VALUE, null);
+        for (Posting candidate : sortedNames.subSet(from, to)) {
+            consider(q, candidate.id(), candidate.text(), heap, capacity, records);
+        }
+        if (heap.size() >= capacity && heap.peek().rank() < SUBSTRING) return;
+        int budget = Math.max(MAX_SCANNED_SUBSTRINGS, capacity);
+        for (Map.Entry<Long, Text> candidate : candidates(q).entrySet()) {
+            if (rank(candidate.getValue().normalized(), q) != SUBSTRING) continue;
+            if (budget-- == 0) break;
+            consider(q, candidate.getKey(), candidate.getValue(), heap, capacity, records);
+        }
+    }
+
+    private static void consider(String q, long id, Text text, PriorityQueue<Hit> heap, int capacity,
+                                 LongFunction<Member> records) {
+        /*用倒排表里存的规范化姓名排序；只有能进入前 k 的候选才去快照里取记录并核对姓名*/
+        String name = text.normalized();
+        int rank = rank(name, q);
+        if (rank < 0) return;
+        if (heap.size() >= capacity && !beats(rank, name, id, heap.peek())) return;
+        Member m = records.apply(id);
+        if (m == null) return;
+        if (!text.name().equals(m.getName())) {
+            // 快照里的姓名与倒排表里的不同（改名前后的过渡期），以快照为准重新计算
+            name = normalize(m.getName());
+            if (name == null) return;
+            rank = rank(name, q);
+            if (rank < 0) return;
+        }
+        offer(heap, new Hit(m, rank, name), capacity);
+    }
+
+    private static int rank(String name, String q) {
+        return name.equals(q) ? EXACT : name.startsWith(q) ? PREFIX : name.contains(q) ? SUBSTRING : -1;
+    }
+
+    private static boolean beats(int rank, String text, long id, Hit worst) {
+        /*与 ORDER 一致：(rank, text, id) 是否排在 worst 之前*/
+        if (rank != worst.rank()) return rank < worst.rank();
+        if (text.length() != worst.text().length()) return text.length() < worst.text().length();
+        int byText = text.compareTo(worst.text());
+        return byText != 0 ? byText < 0 : id < worst.id();
+    }
+
+    private List<Hit> searchStudentIDs(String q, int limit, LongFunction<Member> records) {
+        /*学号前缀：有序表上的一次范围扫描；学号基本等长，按学号顺序取前 limit 条即可*/
+        List<Hit> hits = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : studentIDs.tailMap(q, true).entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(q) || hits.size() >= limit) break;
+            Member m = records.apply(entry.getValue());
+            if (m != null && key.equals(m.getStudentID())) {
+                hits.add(new Hit(m, key.equals(q) ? EXACT : PREFIX, key));
+            }
+        }
+        return hits;
+    }
+
+}
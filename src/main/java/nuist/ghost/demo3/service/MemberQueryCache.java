@@ -0,0 +1,200 @@
+package nuist.ghost.demo3.service;
+/**
+ * @description LRU cache of filter query results keyed by (attribute, value) (筛选结果缓存).
+ *              Bounded by entry count and cached members; a change invalidates only the keys it touches.
+ *              An entry is served only to snapshots no newer than the last change reported to the cache.
+ */
+
+import nuist.ghost.demo3.dto.QueryCacheStats;
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.repository.MemberChangeListener;
+import nuist.ghost.demo3.repository.MemberRepository;
+import nuist.ghost.demo3.repository.MemberSnapshot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+@Component
+public class MemberQueryCache implements MemberChangeListener {
+
+    /*缓存键：属性名和取值，结果是该属性等于该值的全部成员*/
+    private record Key(String attribute, Object value) {
+    }
+
+    private final MemberRepository memberRepository;
+    private final int maxEntries;
+    private final int maxMembers;
+    private final LinkedHashMap<Key, List<Member>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /*以下字段都由 this 保护*/
+    /*缓存过的属性名 -> 从成员取该属性的函数，失效时据此算出受影响的键*/
+    private final Map<String, Function<Member, ?>> attributes = new HashMap<>();
+    private long notifiedVersion;
+    private long cachedMembers;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public MemberQueryCache(MemberRepository memberRepository,
+                            @Value("${members.query-cache.max-entries:256}") int maxEntries,
+                            @Value("${members.query-cache.max-members:200000}") int maxMembers) {
+        this.memberRepository = memberRepository;
+        this.maxEntries = maxEntries;
+        this.maxMembers = maxMembers;
+        memberRepository.addChangeListener(this);
+        synchronized (this) {
+            // 注册之前的修改不会再通知过来；那时缓存是空的，当作都已处理
+            notifiedVersion = Math.max(notifiedVersion, memberRepository.version());
+        }
+    }
+
+    public Stream<Member> stream(String attribute, Function<Member, ?> attributeOf, Object value,
+                                 MemberSnapshot snapshot, Function<Long, Stream<Member>> query, Long after) {
+        /*
+         * 按 id 升序返回 attributeOf 等于 value、id 大于 after 的成员；同一个 attribute 必须总用同一个 attributeOf
+         * query 从 snapshot 查询 id 大于给定值的结果（参数为 null 时从头开始）
+         */
+        Key key = new Key(attribute, value);
+        List<Member> cached = lookup(key, snapshot.version());
+        if (cached != null) {
+            return after == null ? cached.stream() : cached.subList(firstAfter(cached, after), cached.size()).stream();
+        }
+        Stream<Member> rows = query.apply(after);
+        return after == null ? recording(key, attributeOf, snapshot.version(), rows) : rows;
+    }
+
+    private synchronized List<Member> lookup(Key key, long version) {
+        List<Member> members = entries.get(key);
+        // 仓库已经发布、但还没通知到缓存的修改可能让这条缓存过期，这时按未命中处理
+        if (members != null && notifiedVersion >= version) {
+            hits++;
+            return members;
+        }
+        misses++;
+        return null;
+    }
+
+    private Stream<Member> recording(Key key, Function<Member, ?> attributeOf, long version, Stream<Member> rows) {
+        /*边输出边记录；调用方读到末尾且结果不超过成员预算时才存入缓存，只读了一页时不多查一行*/
+        Iterator<Member> source = rows.iterator();
+        Iterator<Member> recorder = new Iterator<>() {
+            private List<Member> copy = new ArrayList<>();
+            private boolean finished;
+
+            @Override
+            public boolean hasNext() {
+                boolean more = source.hasNext();
+                if (!more && !finished) {
+                    finished = true;
+                    if (copy != null) store(key, attributeOf, version, List.copyOf(copy));
+                }
+                return more;
+            }
+
+            @Override
+            public Member next() {
+                Member member = source.next();
+                if (copy != null) {
+                    if (copy.size() < maxMembers) copy.add(member);
+                    else copy = null;
+                }
+                return member;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(recorder,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(rows::close);
+    }
+
+    private synchronized void store(Key key, Function<Member, ?> attributeOf, long version, List<Member> members) {
+        // 计算所用快照之后的修改如果已经通知过，就无法判断它是否影响这份结果，不存
+        if (notifiedVersion > version || entries.containsKey(key)) return;
+        attributes.putIfAbsent(key.attribute(), attributeOf);
+        entries.put(key, members);
+        cachedMembers += members.size();
+        evict();
+    }
+
+    private void evict() {
+        /*按最久未访问的顺序淘汰，直到条数和成员总数都不超限*/
+        Iterator<List<Member>> it = entries.values().iterator();
+        while ((entries.size() > maxEntries || cachedMembers > maxMembers) && it.hasNext()) {
+            cachedMembers -= it.next().size();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static int firstAfter(List<Member> members, long after) {
+        int low = 0;
+        int high = members.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (members.get(mid).getId() <= after) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    @Override
+    public synchronized void onChange(Member before, Member after) {
+        notifiedVersion = memberRepository.version();
+        invalidate(before, after);
+    }
+
+    @Override
+    public synchronized void onChanges(List<Change> changes) {
+        // 一批修改是同一个版本：全部失效之后才能按这个版本命中
+        notifiedVersion = memberRepository.version();
+        for (Change change : changes) {
+            invalidate(change.before(), change.after());
+        }
+    }
+
+    private void invalidate(Member before, Member after) {
+        // 记录不可变：成员进出某个结果，一定是修改前或修改后的取值对应的那条
+        for (Map.Entry<String, Function<Member, ?>> attribute : attributes.entrySet()) {
+            if (before != null) invalidate(new Key(attribute.getKey(), attribute.getValue().apply(before)));
+            if (after != null) invalidate(new Key(attribute.getKey(), attribute.getValue().apply(after)));
+        }
+    }
+
+    private void invalidate(Key key) {
+        List<Member> members = entries.remove(key);
+        if (members != null) {
+            cachedMembers -= members.size();
+            invalidations++;
+        }
+    }
+
+    @Override
+    public synchronized void onClear() {
+        notifiedVersion = memberRepository.version();
+        invalidations += entries.size();
+        entries.clear();
+        cachedMembers = 0;
+    }
+
+    @Override
+    public void onLoad(Collection<Member> loaded) {
+        onClear();
+    }
+
+    public synchronized QueryCacheStats stats() {
+        long lookups = hits + misses;
+        return new QueryCacheStats(hits, misses, lookups == 0 ? 0 : (double) hits / lookups,
+                evictions, invalidations, entries.size(), cachedMembers);
+    }
+}
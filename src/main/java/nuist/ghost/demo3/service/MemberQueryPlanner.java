@@ -0,0 +1,148 @@
+package nuist.ghost.demo3.service;
+/**
+ * @description Query planner for POST /api/members/query (组合查询规划).
+ *              Every condition that has an index is an access path, with an estimated row count:
+ *              memberType / probation / exact name buckets know their size in O(1), the name n-gram
+ *              index gives an upper bound, and a score range is counted exactly in O(log n).
+ *              The cheapest path (or a full scan when nothing beats it) produces the candidates in id order,
+ *              each already satisfying its own condition in the request's snapshot.
+ *              Only the other conditions are then checked on each candidate, which intersects the sets
+ *              without materializing the larger ones.
+ */
+
+import nuist.ghost.demo3.dto.MemberQueryRequest;
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.ScoreField;
+import nuist.ghost.demo3.repository.MemberRepository;
+import nuist.ghost.demo3.repository.MemberSnapshot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+final class MemberQueryPlanner {
+
+    /*一条访问路径：条件名、估计行数、按 id 升序产出候选成员*/
+    record AccessPath(String condition, String description, int estimatedRows, Supplier<Stream<Member>> rows) {
+    }
+
+    /*查询计划：访问路径 + 请求的全部条件 + 对每个候选成员检查的其余条件*/
+    record Plan(AccessPath access, List<String> conditions, Predicate<Member> filter) {
+        String describe() {
+            List<String> rest = new ArrayList<>(conditions);
+            rest.remove(access.condition());
+            String head = access.description() + " (~" + access.estimatedRows() + " rows)";
+            return rest.isEmpty() ? head : head + ", then filter: " + String.join(", ", rest);
+        }
+    }
+
+    private final MemberRepository memberRepository;
+
+    MemberQueryPlanner(MemberRepository memberRepository) {
+        this.memberRepository = memberRepository;
+    }
+
+    Plan plan(MemberQueryRequest request) {
+        // 所有访问路径都从同一个快照读取成员
+        MemberSnapshot snapshot = memberRepository.snapshot();
+        Map<String, Predicate<Member>> conditions = new LinkedHashMap<>();
+        AccessPath best = new AccessPath(null, "full scan", snapshot.members().size(),
+                () -> snapshot.streamAfter(null));
+
+        // 先看 O(1) 就能知道大小的索引
+        String memberType = request.memberType();
+        if (memberType != null) {
+            conditions.put("memberType", m -> memberType.equals(m.getMemberType()));
+            best = cheaper(best, new AccessPath("memberType", "memberType index",
+                    memberRepository.countByMemberType(memberType),
+                    () -> memberRepository.streamByMemberType(snapshot, memberType, null)));
+        }
+        Boolean isProbation = request.isProbation();
+        if (isProbation != null) {
+            conditions.put("isProbation", m -> m.isProbation() == isProbation);
+            best = cheaper(best, new AccessPath("isProbation", "probation index",
+                    memberRepository.countByIsProbation(isProbation),
+                    () -> memberRepository.streamByIsProbation(snapshot, isProbation, null)));
+        }
+        String name = request.name();
+        if (name != null) {
+            conditions.put("name", m -> Objects.equals(m.getName(), name));
+            best = cheaper(best, new AccessPath("name", "name index",
+                    memberRepository.countByName(name),
+                    () -> memberRepository.streamByName(snapshot, name, null)));
+        }
+        String nameContains = request.nameContains();
+        if (nameContains != null) {
+            if (nameContains.isBlank()) {
+                throw new IllegalArgumentException("nameContains cannot be blank.");
+            }
+            conditions.put("nameContains", MemberRepository.nameContaining(nameContains));
+            best = cheaper(best, new AccessPath("nameContains", "name n-gram index",
+                    memberRepository.countByNameContaining(nameContains),
+                    () -> memberRepository.streamByNameContaining(snapshot, nameContains)));
+        }
+
+        // 分数区间的行数由分数索引精确给出，O(log n)
+        Map<String, MemberQueryRequest.ScoreRange> scores = request.scores();
+        if (scores != null) {
+            for (Map.Entry<String, MemberQueryRequest.ScoreRange> entry : scores.entrySet()) {
+                ScoreField field = ScoreField.fromPathName(entry.getKey());
+                MemberQueryRequest.ScoreRange range = entry.getValue();
+                double min = range == null || range.min() == null ? Double.NEGATIVE_INFINITY : range.min();
+                double max = range == null || range.max() == null ? Double.POSITIVE_INFINITY : range.max();
+                if (min > max) {
+                    throw new IllegalArgumentException("min score cannot be greater than max score: " + entry.getKey());
+                }
+                String condition = field.getPathName();
+                conditions.put(condition, m -> field.of(m) >= min && field.of(m) <= max);
+                best = cheaper(best, new AccessPath(condition, condition + " score index",
+                        memberRepository.countByScoreBetween(snapshot, field, min, max),
+                        // 分数索引按分数排序，访问路径要按 id 升序产出
+                        () -> memberRepository.streamByScoreBetween(snapshot, field, min, true, max, true, null, null)
+                                .sorted(Comparator.comparing(Member::getId))));
+            }
+        }
+        // 访问路径只产出满足自身条件的成员，不用再检查一遍
+        Predicate<Member> filter = m -> true;
+        for (Map.Entry<String, Predicate<Member>> condition : conditions.entrySet()) {
+            if (!condition.getKey().equals(best.condition())) {
+                filter = filter.and(condition.getValue());
+            }
+        }
+        return new Plan(best, List.copyOf(conditions.keySet()), filter);
+    }
+
+    private static AccessPath cheaper(AccessPath current, AccessPath candidate) {
+        /*行数相同时保留先出现的：先出现的都是 O(1) 定位、无需排序的索引*/
+        return candidate.estimatedRows() < current.estimatedRows() ? candidate : current;
+    }
+
+    static Comparator<Member> order(String sortBy, boolean descending) {
+        /*返回 null 表示按 id 升序，访问路径产出的顺序已经是这样，不用再排序*/
+        Comparator<Member> byId = Comparator.comparing(Member::getId);
+        Comparator<Member> order = switch (sortBy == null ? "id" : sortBy) {
+            case "id" -> byId;
+            case "name" -> Comparator.comparing(Member::getName, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+            case "studentID" -> Comparator.comparing(Member::getStudentID, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+            case "joinDate" -> Comparator.comparing(Member::getJoinDate, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+            case "interview", "internship", "salary" -> {
+                ScoreField field = ScoreField.fromPathName(sortBy);
+                yield Comparator.comparingDouble(field::of);
+            }
+            default -> throw new IllegalArgumentException("Unsupported sortBy: " + sortBy
+                    + ". Use id/name/studentID/joinDate/interview/internship/salary.");
+        };
+        if (order != byId) {
+            order = order.thenComparing(byId);
+        } else if (!descending) {
+            return null;
+        }
+        return descending ? order.reversed() : order;
+    }
+}
@@ -6,35 +6,87 @@ package nuist.ghost.demo3.service;
  * @description
  */
 
+import nuist.ghost.demo3.dto.BatchCreateResult;
+import nuist.ghost.demo3.dto.BulkOperationRequest;
+import nuist.ghost.demo3.dto.BulkOperationResult;
 import nuist.ghost.demo3.dto.CreateMemberRequest;
+import nuist.ghost.demo3.dto.MemberQueryRequest;
+import nuist.ghost.demo3.dto.MemberQueryResult;
+import nuist.ghost.demo3.dto.QueryCacheStats;
+import nuist.ghost.demo3.dto.RosterStats;
 import nuist.ghost.demo3.dto.UpdateMemberRequest;
 import nuist.ghost.demo3.entities.Member;
 import nuist.ghost.demo3.entities.President;
 import nuist.ghost.demo3.entities.RegularMember;
+import nuist.ghost.demo3.entities.ScoreField;
 import nuist.ghost.demo3.entities.SectionHead;
+import nuist.ghost.demo3.exception.ConcurrentModificationConflictException;
 import nuist.ghost.demo3.exception.DuplicateStudentIDException;
 import nuist.ghost.demo3.exception.NotFoundException;
+import nuist.ghost.demo3.exception.PreconditionFailedException;
+import nuist.ghost.demo3.persistence.MemberJournal;
+import nuist.ghost.demo3.persistence.PersistenceScheduler;
 import nuist.ghost.demo3.repository.MemberRepository;
-import nuist.ghost.demo3.utils.JsonUtils;
-import nuist.ghost.demo3.utils.SortUtils;
+import nuist.ghost.demo3.repository.MemberSnapshot;
+import nuist.ghost.demo3.repository.RankedMember;
 import org.springframework.stereotype.Service;
 
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 public class MemberService {
 
     private final MemberRepository memberRepository;
-
-    public MemberService(MemberRepository memberRepository) {
+    private final PersistenceScheduler persistenceScheduler;
+    private final MemberJournal memberJournal;
+    private final MemberQueryCache queryCache;
+    private final MemberQueryPlanner queryPlanner;
+    private final RosterStatistics rosterStatistics;
+
+    public static final int MAX_BATCH_SIZE = 5000;
+    public static final int MAX_SEARCH_LIMIT = 50;
+    public static final int DEFAULT_QUERY_LIMIT = 100;
+    public static final int MAX_QUERY_LIMIT = 1000;
+    public static final int MAX_LEADERBOARD_SIZE = 1000;
+    private static final int MAX_CAS_ATTEMPTS = 16;
+
+    public MemberService(MemberRepository memberRepository, PersistenceScheduler persistenceScheduler,
+                         MemberJournal memberJournal, MemberQueryCache queryCache,
+                         RosterStatistics rosterStatistics) {
         this.memberRepository = memberRepository;
+        this.persistenceScheduler = persistenceScheduler;
+        this.memberJournal = memberJournal;
+        this.queryCache = queryCache;
+        this.queryPlanner = new MemberQueryPlanner(memberRepository);
+        this.rosterStatistics = rosterStatistics;
     }
 
 
     public Member createMember(Member member) {
         /*创建成员*/
+        validateNewMember(member);
+        //检查学号是否重复与插入在仓库中原子完成，并发创建时也不会出现重复学号
+        String checkedStudentID = member.getStudentID();
+        Member created = memberRepository.insertIfAbsent(member)
+                .orElseThrow(() -> new DuplicateStudentIDException("Member with studentID " + checkedStudentID + " already exists."));
+        //预写日志 fsync 之后才返回
+        memberJournal.awaitDurable();
+        return created;
+    }
+
+    private void validateNewMember(Member member) {
+        /*创建前的校验；学号去掉首尾空格后写回成员*/
         if (member == null) {
             throw new IllegalArgumentException("member cannot be null.");
         }
@@ -50,12 +102,7 @@ public class MemberService {
         if(!studentID.matches("\\d{12}")){
             throw new IllegalArgumentException("StudentID must be exactly 12 digits.");
         }
-        //在创建成员之前，检查是否已经存在相同学号的成员
-        if(memberRepository.existsByStudentID(studentID)){
-            throw new DuplicateStudentIDException("Member with studentID " + studentID + " already exists.");
-        }
         member.setStudentID(studentID);
-        return memberRepository.save(member);
     }
 
     private Double parseScore(String value, String fieldName) {
@@ -70,6 +117,66 @@ public class MemberService {
     }
 
     public Member createMember(CreateMemberRequest request) {
+        return createMember(buildMember(request));
+    }
+
+    public List<BatchCreateResult> createMembers(List<CreateMemberRequest> requests) {
+        /*
+         * 批量创建：
+         * 1. 并行解析、校验每条请求（互不依赖）
+         * 2. 批内学号重复的，只保留第一条
+         * 3. 在仓库中一次加锁全部插入（与已有学号重复的返回 409）
+         * 4. 预写日志只 fsync 一次，返回时整批已落盘
+         */
+        if (requests == null) {
+            throw new IllegalArgumentException("requests cannot be null.");
+        }
+        if (requests.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("A batch can contain at most " + MAX_BATCH_SIZE + " members.");
+        }
+        BatchCreateResult[] results = new BatchCreateResult[requests.size()];
+        Member[] built = new Member[requests.size()];
+        IntStream.range(0, requests.size()).parallel().forEach(i -> {
+            try {
+                Member member = buildMember(requests.get(i));
+                validateNewMember(member);
+                built[i] = member;
+            } catch (IllegalArgumentException e) {
+                results[i] = BatchCreateResult.invalid(i, e.getMessage());
+            }
+        });
+
+        Map<String, Integer> firstIndexOfStudentID = new HashMap<>();
+        List<Member> toInsert = new ArrayList<>();
+        List<Integer> insertIndexes = new ArrayList<>();
+        for (int i = 0; i < built.length; i++) {
+            if (built[i] == null) continue;
+            Integer first = firstIndexOfStudentID.putIfAbsent(built[i].getStudentID(), i);
+            if (first != null) {
+                results[i] = BatchCreateResult.duplicate(i,
+                        "StudentID " + built[i].getStudentID() + " is duplicated in this batch (same as item " + first + ").");
+                continue;
+            }
+            toInsert.add(built[i]);
+            insertIndexes.add(i);
+        }
+
+        List<Member> inserted = memberRepository.insertAllIfAbsent(toInsert);
+        for (int k = 0; k < inserted.size(); k++) {
+            int i = insertIndexes.get(k);
+            Member member = inserted.get(k);
+            results[i] = member != null
+                    ? BatchCreateResult.created(i, member)
+                    : BatchCreateResult.duplicate(i, "Member with studentID " + toInsert.get(k).getStudentID() + " already exists.");
+        }
+        if (!toInsert.isEmpty()) {
+            memberJournal.flush();
+        }
+        return Arrays.asList(results);
+    }
+
+    private Member buildMember(CreateMemberRequest request) {
+        /*把请求转成成员对象并校验分数，不写入仓库*/
         if (request == null) {
             throw new IllegalArgumentException("request cannot be null.");
         }
@@ -114,7 +221,7 @@ public class MemberService {
             }else throw new IllegalArgumentException("Salary score must be between 0 and 5500.");
         }
 
-        return createMember(member);
+        return member;
     }
 
     public List<Member> getAllMembers() {
@@ -122,6 +229,11 @@ public class MemberService {
         return memberRepository.findAll();
     }
 
+    public Stream<Member> streamAllMembers(MemberSnapshot snapshot, Long after) {
+        /*按 id 升序惰性获取快照中 id 大于 after 的成员（分页 / 流式输出用）*/
+        return snapshot.streamAfter(after);
+    }
+
     public Member getMemberByID(Long id){
         /*通过ID获取成员*/
         return memberRepository.findById(id)
@@ -134,35 +246,216 @@ public class MemberService {
                 .orElseThrow(() -> new NotFoundException("Member is not existed: studentID=" + studentID));
     }
 
-    public List<Member> getMembersByName(String name){
+    /*
+     * 以下筛选查询都经过 MemberQueryCache：结果缓存到相关成员发生变化为止
+     * 缓存键是（属性, 取值），取属性的函数要与仓库里对应查询的判断一致
+     * snapshot 是调用方用来生成 ETag 的快照，成员记录都从它读取
+     */
+    public Stream<Member> getMembersByName(MemberSnapshot snapshot, String name, Long after){
         /*通过姓名获取成员*/
-        return memberRepository.findByName(name);
+        return queryCache.stream("name", Member::getName, name,
+                snapshot, a -> memberRepository.streamByName(snapshot, name, a), after);
     }
 
-    public List<Member> getMembersByIsProbation(boolean isProbation){
+    public Stream<Member> getMembersByIsProbation(MemberSnapshot snapshot, boolean isProbation, Long after){
         /*通过是否为实习期获取成员*/
-        return memberRepository.findByIsProbation(isProbation);
+        return queryCache.stream("probation", Member::isProbation, isProbation,
+                snapshot, a -> memberRepository.streamByIsProbation(snapshot, isProbation, a), after);
     }
 
-    public List<Member> getMembersByInternshipScoreGreaterThan(double score){
+    /*
+     * 分数区间查询按分数从高到低、同分按 id 升序返回；游标是上一页最后一个成员的 id（after）和分数（afterScore）
+     * 只给 after 时从快照里查它的分数，这个成员已不存在时需要调用方带上 afterScore
+     */
+    public Stream<Member> getMembersByInternshipScoreGreaterThan(MemberSnapshot snapshot, double score, Long after, Double afterScore){
         /*通过实习分获取成员*/
-        return memberRepository.findByInternshipScoreGreaterThan(score);
+        return scoreRange(snapshot, ScoreField.INTERNSHIP, score, false, Double.POSITIVE_INFINITY, true, after, afterScore);
+    }
+
+    public Stream<Member> getMembersByScoreGreaterThan(MemberSnapshot snapshot, String field, double score, Long after, Double afterScore){
+        /*某项分数高于 score 的成员*/
+        return scoreRange(snapshot, ScoreField.fromPathName(field), score, false, Double.POSITIVE_INFINITY, true, after, afterScore);
     }
 
-    public List<Member> getMembersByPositon(String position){
+    public Stream<Member> getMembersByScoreLessThan(MemberSnapshot snapshot, String field, double score, Long after, Double afterScore){
+        /*某项分数低于 score 的成员*/
+        return scoreRange(snapshot, ScoreField.fromPathName(field), Double.NEGATIVE_INFINITY, true, score, false, after, afterScore);
+    }
+
+    public Stream<Member> getMembersByScoreBetween(MemberSnapshot snapshot, String field, double min, double max, Long after, Double afterScore){
+        /*某项分数在 [min, max] 之间的成员*/
+        if (min > max) {
+            throw new IllegalArgumentException("min score cannot be greater than max score.");
+        }
+        return scoreRange(snapshot, ScoreField.fromPathName(field), min, true, max, true, after, afterScore);
+    }
+
+    private Stream<Member> scoreRange(MemberSnapshot snapshot, ScoreField field, double min, boolean minInclusive,
+                                      double max, boolean maxInclusive, Long after, Double afterScore) {
+        /*直接在分数索引里按游标定位，不经过结果缓存（缓存的结果按 id 排序）*/
+        if (afterScore != null && after == null) {
+            throw new IllegalArgumentException("afterScore requires after.");
+        }
+        if (after != null && afterScore == null) {
+            afterScore = snapshot.findById(after).map(field::of).orElseThrow(() -> new IllegalArgumentException(
+                    "Member " + after + " no longer exists, pass afterScore to continue after it."));
+        }
+        return memberRepository.streamByScoreBetween(snapshot, field, min, minInclusive, max, maxInclusive, afterScore, after);
+    }
+
+    public Stream<Member> getMembersByPositon(MemberSnapshot snapshot, String position, Long after){
         /*通过职位获取成员*/
-        return memberRepository.findByMemberType(position);
+        return queryCache.stream("position", Member::getMemberType, position,
+                snapshot, a -> memberRepository.streamByMemberType(snapshot, position, a), after);
     }
 
+    public List<Member> searchMembers(MemberSnapshot snapshot, String query, String field, int limit) {
+        /*输入即搜索：field 为 name / studentID 时只搜该字段，为 null 时两者都搜*/
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query cannot be empty.");
+        }
+        if (limit <= 0 || limit > MAX_SEARCH_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_SEARCH_LIMIT + ".");
+        }
+        boolean names = field == null || field.equals("name");
+        boolean studentIDs = field == null || field.equals("studentID");
+        if (!names && !studentIDs) {
+            throw new IllegalArgumentException("Unsupported search field: " + field + ". Use name/studentID.");
+        }
+        return memberRepository.search(snapshot, query, names, studentIDs, limit);
+    }
 
-    public Member updateMember(Long id, UpdateMemberRequest request){
-        /*更新成员（业务层统一处理不存在）*/
+    public MemberQueryResult queryMembers(MemberQueryRequest request) {
+        /*组合查询：规划器选出最省的访问路径，逐个检查其余条件，再排序分页*/
+        if (request == null) {
+            throw new IllegalArgumentException("Query request cannot be null.");
+        }
+        int offset = request.offset() == null ? 0 : request.offset();
+        int limit = request.limit() == null ? DEFAULT_QUERY_LIMIT : request.limit();
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset cannot be negative.");
+        }
+        if (limit <= 0 || limit > MAX_QUERY_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_QUERY_LIMIT + ".");
+        }
+        Comparator<Member> order = MemberQueryPlanner.order(request.sortBy(), Boolean.TRUE.equals(request.descending()));
+        MemberQueryPlanner.Plan plan = queryPlanner.plan(request);
+
+        List<Member> matches;
+        try (Stream<Member> rows = plan.access().rows().get()) {
+            matches = rows.filter(plan.filter()).collect(Collectors.toList());
+        }
+        if (order != null) {
+            matches.sort(order);
+        }
+        int from = Math.min(offset, matches.size());
+        int to = Math.min(from + limit, matches.size());
+        return new MemberQueryResult(matches.size(), offset, limit, plan.describe(), List.copyOf(matches.subList(from, to)));
+    }
+
+    public List<RankedMember> getLeaderboard(MemberSnapshot snapshot, String field, String scope, int limit) {
+        /*某项分数的前 limit 名；scope: all（默认）/ intern / official*/
+        if (limit <= 0 || limit > MAX_LEADERBOARD_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LEADERBOARD_SIZE + ".");
+        }
+        return memberRepository.topByScore(snapshot, ScoreField.fromPathName(field), probationScope(scope), limit);
+    }
+
+    public RankedMember getLeaderboardRank(String field, String scope, Long id) {
+        /*某个成员在排行榜中的名次*/
+        ScoreField scoreField = ScoreField.fromPathName(field);
+        Boolean isProbation = probationScope(scope);
         Member member = getMemberByID(id);
+        return memberRepository.rankByScore(memberRepository.snapshot(), scoreField, isProbation, id)
+                .orElseThrow(() -> new NotFoundException("Member is not on the " + (scope == null ? "all" : scope)
+                        + " leaderboard: id=" + member.getId()));
+    }
+
+    private static Boolean probationScope(String scope) {
+        if (scope == null) return null;
+        return switch (scope) {
+            case "all" -> null;
+            case "intern" -> true;
+            case "official" -> false;
+            default -> throw new IllegalArgumentException("Unsupported scope: " + scope + ". Use all/intern/official.");
+        };
+    }
+
+    public RosterStats getRosterStats() {
+        /*统计随每次修改增量更新，这里只复制计数，不遍历成员*/
+        return rosterStatistics.snapshot();
+    }
+
+    public String statsTag() {
+        return memberRepository.epoch() + "-t" + rosterStatistics.version();
+    }
+
+    public QueryCacheStats getQueryCacheStats() {
+        return queryCache.stats();
+    }
+
+
+    public Member updateMember(Long id, UpdateMemberRequest request){
+        /*更新成员（业务层统一处理不存在）；不带 If-Match 时后写者生效*/
+        return updateMember(id, request, null);
+    }
+
+    public Member updateMember(Long id, UpdateMemberRequest request, List<String> ifMatch){
+        /*
+         * 在副本上应用修改，再用比较并替换写回：读者要么看到旧记录，要么看到完整的新记录
+         * ifMatch 不为 null 时（请求带 If-Match），成员不存在、当前 ETag 不在其中或写回前被别人改过都返回 412
+         */
+        Member current = memberRepository.findById(id).orElse(null);
+        if (current == null && ifMatch != null) {
+            throw new PreconditionFailedException("Member is not existed: id=" + id);
+        }
+        if (current == null) {
+            throw new NotFoundException("Member is not existed: id=" + id);
+        }
 
         if (request == null) {
             throw new IllegalArgumentException("Update request cannot be null.");
         }
 
+        Member updated;
+        if (ifMatch == null) {
+            updated = transition(current, member -> applyUpdate(member, request));
+        } else {
+            if (!ifMatch.contains("*") && !ifMatch.contains(versionTag(current))) {
+                throw new PreconditionFailedException("Member was modified by someone else, reload and retry: id=" + id);
+            }
+            updated = applyUpdate(current, request);
+            if (!memberRepository.compareAndReplace(updated, current.getVersion())) {
+                throw new PreconditionFailedException("Member was modified by someone else, reload and retry: id=" + id);
+            }
+        }
+        memberJournal.awaitDurable();
+        return updated;
+    }
+
+    public String versionTag(Member member) {
+        /*ETag 内容：运行标识 + 记录版本号*/
+        return memberRepository.epoch() + "-" + member.getVersion();
+    }
+
+    public MemberSnapshot snapshot() {
+        return memberRepository.snapshot();
+    }
+
+    public String storeTag(MemberSnapshot snapshot) {
+        /*列表接口的 ETag：运行标识 + 仓库版本号，任何成员变化都会改变它；不读取成员数据*/
+        return memberRepository.epoch() + "-s" + snapshot.version();
+    }
+
+    public long lastModified() {
+        /*仓库最近一次修改的时间（毫秒）；单个成员的修改时间不会晚于它*/
+        return memberRepository.lastModified();
+    }
+
+    private Member applyUpdate(Member current, UpdateMemberRequest request) {
+        /*返回应用了修改的副本，current 本身不变*/
+        Member member = recreateWithType(current, current.getMemberType());
+
         if (request.name() != null && !request.name().trim().isEmpty()) {
             member.setName(request.name().trim());
         }
@@ -199,38 +492,58 @@ public class MemberService {
         Double salaryScore = parseScore(request.salaryScore(), "Salary Score");
         if (salaryScore != null) {
             if(salaryScore >=0 && salaryScore <= 5500) {
-                member.setSalaryScore(salaryScore);;
+                member.setSalaryScore(salaryScore);
             }else throw new IllegalArgumentException("Salary score must be between 0 and 5500.");
         }
 
-        return memberRepository.save(member);
+        return member;
     }
 
     public void promoteMember(Long id){
         /*提升成员*/
-        Member member = getMemberByID(id);
+        transition(getMemberByID(id), this::promoted);
+        memberJournal.awaitDurable();
+    }
+
+    public void demoteMember(Long id) {
+        transition(getMemberByID(id), this::demoted);
+        memberJournal.awaitDurable();
+    }
+
+    private Member transition(Member current, UnaryOperator<Member> change) {
+        /*
+         * 基于新对象的状态转换 + 比较并替换：其他管理员同时修改了这个成员时，重新读取后再试
+         * 替换是一步完成的，并发读取不会看到成员暂时不存在
+         */
+        Long id = current.getId();
+        for (int attempt = 0; attempt < MAX_CAS_ATTEMPTS; attempt++) {
+            Member replacement = change.apply(current);
+            if (memberRepository.compareAndReplace(replacement, current.getVersion())) {
+                return replacement;
+            }
+            current = getMemberByID(id);
+        }
+        throw new ConcurrentModificationConflictException("Member is being modified concurrently, please retry: id=" + id);
+    }
+
+    private Member promoted(Member member) {
         String nextType = switch (member.getMemberType()) {
             case "RegularMember" -> "SectionHead";
             case "SectionHead" -> "President";
-            case "President" -> throw new IllegalArgumentException("Member is already at highest position: id=" + id);
+            case "President" -> throw new IllegalArgumentException("Member is already at highest position: id=" + member.getId());
             default -> throw new IllegalStateException("Unexpected member type: " + member.getMemberType());
         };
-
-        Member promotedMember = recreateWithType(member, nextType);
-        replaceMember(id, promotedMember);
+        return recreateWithType(member, nextType);
     }
 
-    public void demoteMember(Long id) {
-        Member member = getMemberByID(id);
+    private Member demoted(Member member) {
         String nextType = switch (member.getMemberType()) {
-            case "RegularMember" -> throw new IllegalArgumentException("Member is already at lowest position: id=" + id);
+            case "RegularMember" -> throw new IllegalArgumentException("Member is already at lowest position: id=" + member.getId());
             case "SectionHead" -> "RegularMember";
             case "President" -> "SectionHead";
             default -> throw new IllegalStateException("Unexpected member type: " + member.getMemberType());
         };
-
-        Member demotedMember = recreateWithType(member, nextType);
-        replaceMember(id, demotedMember);
+        return recreateWithType(member, nextType);
     }
 
     private Member recreateWithType(Member source, String memberType) {
@@ -247,11 +560,6 @@ public class MemberService {
         return recreated;
     }
 
-    private void replaceMember(Long id, Member replacement) {
-        memberRepository.deleteById(id);
-        memberRepository.save(replacement);
-    }
-
     private void duplicateInfo(Member operatedMember, Member member) {
         operatedMember.setEmail(member.getEmail());
         operatedMember.setPhoneNumber(member.getPhoneNumber());
@@ -267,30 +575,24 @@ public class MemberService {
             throw new NotFoundException("Member is not existed: id=" + id);
         }
         memberRepository.deleteById(id);
+        memberJournal.awaitDurable();
     }
 
     public void deleteAllMembers() {
         memberRepository.deleteAll();
+        memberJournal.awaitDurable();
     }
 
 
     public void exportMembersToJson() {
-        final Path dataPath = Paths.get("data", "members.json");
+        //平时由 PersistenceScheduler 在后台合并写入；导出接口要求立即落盘
         try {
-            JsonUtils.writeToFile(memberRepository.findAll(), dataPath);
+            persistenceScheduler.exportJson();
         } catch (Exception e) {
             throw new IllegalStateException("Failed to export members to JSON.", e);
         }
     }
 
-    public void sortMembersByStudentID(List<Member> members) {
-        List<Member> sortedMembers = SortUtils.quickSortByID(members);
-        memberRepository.deleteAll();
-        memberRepository.saveAll(sortedMembers);
-        exportMembersToJson();
-    }
-
-
     public void createSampleData() {
         /*
          * 创建样本数据
@@ -308,20 +610,118 @@ public class MemberService {
         createMember(member1);
         createMember(member2);
         createMember(member3);
-        exportMembersToJson();
     }
 
 
     public void regularizeMember(Long id) {
-        Member member = getMemberByID(id);
+        transition(getMemberByID(id), this::regularized);
+        memberJournal.awaitDurable();
+    }
+
+    private Member regularized(Member member) {
         if (member.isProbation()) {
-            member.setProbation(false);
+            //在副本上修改，原记录保持不变，直到比较并替换成功
+            Member regular = recreateWithType(member, member.getMemberType());
+            regular.setProbation(false);
             double initSalaryScore = member.getInternshipScore() * 10;
-            member.setSalaryScore(initSalaryScore);
-            member.setInternshipScore(0);
-            memberRepository.save(member);
+            regular.setSalaryScore(initSalaryScore);
+            regular.setInternshipScore(0);
+            return regular;
+        } else {
+            throw new IllegalArgumentException("Member is not on probation: id=" + member.getId());
+        }
+    }
+
+    public List<BulkOperationResult> bulkOperation(String operation, BulkOperationRequest request) {
+        /*
+         * 批量晋升 / 降级 / 转正 / 删除
+         * 目标成员按 id 列表或过滤条件选出；全部修改在仓库的一次写锁内完成，
+         * 预写日志只 fsync 一次；每个成员单独给出结果，个别失败不影响其他成员
+         */
+        UnaryOperator<Member> change = switch (operation) {
+            case "promote" -> this::promoted;
+            case "demote" -> this::demoted;
+            case "regularize" -> this::regularized;
+            case "delete" -> null;
+            default -> throw new IllegalArgumentException(
+                    "Unsupported operation: " + operation + ". Use promote/demote/regularize/delete.");
+        };
+        if (request == null) {
+            throw new IllegalArgumentException("request cannot be null.");
+        }
+
+        List<BulkOperationResult> results = memberRepository.batch(() -> {
+            List<BulkOperationResult> outcomes = new ArrayList<>();
+            for (Long id : selectTargets(request)) {
+                Member member = id == null ? null : memberRepository.findById(id).orElse(null);
+                if (member == null) {
+                    outcomes.add(BulkOperationResult.notFound(id));
+                    continue;
+                }
+                try {
+                    Member after = null;
+                    if (change == null) {
+                        memberRepository.deleteById(id);
+                    } else {
+                        after = transition(member, change);
+                    }
+                    outcomes.add(BulkOperationResult.done(id, after));
+                } catch (IllegalArgumentException e) {
+                    outcomes.add(BulkOperationResult.rejected(id, e.getMessage()));
+                } catch (NotFoundException e) {
+                    outcomes.add(BulkOperationResult.notFound(id));
+                } catch (ConcurrentModificationConflictException e) {
+                    // 比较并替换的重试次数用完：只有这个成员失败，其余成员照常执行
+                    outcomes.add(BulkOperationResult.conflict(id, e.getMessage()));
+                }
+            }
+            return outcomes;
+        });
+        if (results.stream().anyMatch(result -> result.status() == 200)) {
+            memberJournal.flush();
+        }
+        return results;
+    }
+
+    private List<Long> selectTargets(BulkOperationRequest request) {
+        /*id 列表（去重、保持顺序）或满足全部过滤条件的成员 id（按 id 升序）*/
+        if (request.ids() != null) {
+            if (request.hasFilter()) {
+                throw new IllegalArgumentException("Use either ids or a filter, not both.");
+            }
+            return new ArrayList<>(new LinkedHashSet<>(request.ids()));
+        }
+        if (!request.hasFilter()) {
+            throw new IllegalArgumentException("Either ids or a filter (memberType, isProbation, scoreField) is required.");
+        }
+        if (request.scoreField() == null && (request.minScore() != null || request.maxScore() != null)) {
+            throw new IllegalArgumentException("minScore / maxScore require scoreField.");
+        }
+
+        MemberSnapshot snapshot = memberRepository.snapshot();
+        Stream<Member> candidates;
+        Predicate<Member> matches = member -> true;
+        if (request.scoreField() != null) {
+            //分数区间走 ScoreIndex，其余条件再逐个过滤
+            ScoreField field = ScoreField.fromPathName(request.scoreField());
+            double min = request.minScore() == null ? Double.NEGATIVE_INFINITY : request.minScore();
+            double max = request.maxScore() == null ? Double.POSITIVE_INFINITY : request.maxScore();
+            candidates = memberRepository.streamByScoreBetween(snapshot, field, min, true, max, true, null, null)
+                    .sorted(Comparator.comparing(Member::getId));
+            if (request.memberType() != null) {
+                matches = matches.and(member -> member.getMemberType().equals(request.memberType()));
+            }
+            if (request.isProbation() != null) {
+                matches = matches.and(member -> member.isProbation() == request.isProbation());
+            }
+        } else if (request.memberType() != null) {
+            candidates = memberRepository.streamByMemberType(snapshot, request.memberType(), null);
+            if (request.isProbation() != null) {
+                matches = matches.and(member -> member.isProbation() == request.isProbation());
+            }
         } else {
-            throw new IllegalArgumentException("Member is not on probation: id=" + id);
+            candidates = memberRepository.streamByIsProbation(snapshot, request.isProbation(), null);
         }
+        return candidates.filter(matches).map(Member::getId).collect(Collectors.toList());
     }
 }
@@ -0,0 +1,120 @@
+package nuist.ghost.demo3.service;
+/**
+ * @description Roster statistics kept up to date on every change (增量维护的成员统计).
+ *              Counts per memberType and probation status, plus the sum and a fixed-width histogram
+ *              of every score field. Each change removes the old record's contribution and adds the
+ *              new one's, which costs O(1) per write. A read copies the counters and never scans members.
+ *              Score sums are kept in hundredths as long, so adding and removing never drifts the way a
+ *              double sum would.
+ *              Startup bulk loads arrive through onLoad, batches through onChanges; everything else through
+ *              onChange / onClear.
+ */
+
+import nuist.ghost.demo3.dto.RosterStats;
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.ScoreField;
+import nuist.ghost.demo3.repository.MemberChangeListener;
+import nuist.ghost.demo3.repository.MemberRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Component
+public class RosterStatistics implements MemberChangeListener {
+
+    static final int HISTOGRAM_BUCKETS = 10;
+
+    /*以下字段都由 this 保护*/
+    private long total;
+    private long probation;
+    private final TreeMap<String, Long> byMemberType = new TreeMap<>();
+    private final EnumMap<ScoreField, Long> scoreSums = new EnumMap<>(ScoreField.class);
+    private final EnumMap<ScoreField, long[]> histograms = new EnumMap<>(ScoreField.class);
+    private long version;
+
+    public RosterStatistics(MemberRepository memberRepository) {
+        reset();
+        memberRepository.addChangeListener(this);
+    }
+
+    private void reset() {
+        total = 0;
+        probation = 0;
+        byMemberType.clear();
+        for (ScoreField field : ScoreField.values()) {
+            scoreSums.put(field, 0L);
+            histograms.put(field, new long[HISTOGRAM_BUCKETS]);
+        }
+    }
+
+    private void apply(Member m, int sign) {
+        /*sign 为 1 时计入，为 -1 时扣除*/
+        total += sign;
+        if (m.isProbation()) probation += sign;
+        byMemberType.merge(m.getMemberType(), (long) sign, (a, b) -> a + b == 0 ? null : a + b);
+        for (ScoreField field : ScoreField.values()) {
+            double score = field.of(m);
+            scoreSums.merge(field, Math.round(score * 100) * sign, Long::sum);
+            histograms.get(field)[bucket(field, score)] += sign;
+        }
+    }
+
+    private void replace(Member before, Member after) {
+        if (before != null) apply(before, -1);
+        if (after != null) apply(after, 1);
+    }
+
+    private static int bucket(ScoreField field, double score) {
+        int index = (int) Math.floor(score / field.getMaxScore() * HISTOGRAM_BUCKETS);
+        return Math.max(0, Math.min(HISTOGRAM_BUCKETS - 1, index));
+    }
+
+    @Override
+    public synchronized void onChange(Member before, Member after) {
+        replace(before, after);
+        version++;
+    }
+
+    @Override
+    public synchronized void onChanges(List<Change> changes) {
+        /*一个 batch 是仓库的一个版本：整批在同一把锁内计入，统计版本号只加一次*/
+        for (Change change : changes) {
+            replace(change.before(), change.after());
+        }
+        version++;
+    }
+
+    @Override
+    public synchronized void onClear() {
+        reset();
+        version++;
+    }
+
+    @Override
+    public synchronized void onLoad(Collection<Member> loaded) {
+        for (Member m : loaded) {
+            apply(m, 1);
+        }
+        version++;
+    }
+
+    public synchronized long version() {
+        /*统计每变化一次加一，用作 ETag*/
+        return version;
+    }
+
+    public synchronized RosterStats snapshot() {
+        Map<String, RosterStats.ScoreStats> scores = new LinkedHashMap<>();
+        for (ScoreField field : ScoreField.values()) {
+            double average = total == 0 ? 0 : scoreSums.get(field) / 100.0 / total;
+            scores.put(field.getPathName(), new RosterStats.ScoreStats(average,
+                    field.getMaxScore() / HISTOGRAM_BUCKETS, histograms.get(field).clone()));
+        }
+        return new RosterStats(total, new LinkedHashMap<>(byMemberType), probation, total - probation, scores);
+    }
+}
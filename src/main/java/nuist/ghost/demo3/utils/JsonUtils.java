@@ -5,10 +5,15 @@ package nuist.ghost.demo3.utils;
  *              All of utility classes are defined in this package
  */
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import nuist.ghost.demo3.entities.Member;
 import nuist.ghost.demo3.entities.President;
@@ -17,11 +22,15 @@ import nuist.ghost.demo3.entities.SectionHead;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public final class JsonUtils {
 /**
@@ -85,21 +94,77 @@ public final class JsonUtils {
         /**
          * 从指定路径读取 JSON 文件，并转为 Member 对象列表   JSON -> List<Member>
          */
-        List<Member> loaded = new ArrayList<>();
-        if (!Files.exists(path)) return loaded;
-        try (InputStream is = Files.newInputStream(path)) {
-            JsonNode root = MAPPER.readTree(is);
-            if (root != null && root.isArray()) {
-                for (JsonNode node : root) {
-                    Member m = convertNodeToMember(node);
-                    if (m != null) loaded.add(m);
+        return readMembers(path, false).members();
+    }
+
+    public record MemberReadResult(List<Member> members, List<String> problems) {
+        /**
+         * members: 成功读出的成员（保持文件中的顺序）
+         * problems: 被跳过的记录及原因，例如 "record 12: Could not resolve type id 'Foo'"
+         */
+    }
+
+    public static MemberReadResult readMembers(Path path, boolean parallel) {
+        /**
+         * 流式读取成员数组   JSON -> List<Member>
+         * 不建整棵 JsonNode 树：逐条把记录拷进 TokenBuffer，再按 memberType 直接反序列化为子类
+         * 单条记录出错只跳过这一条；parallel 时按批并行转换，结果顺序不变
+         */
+        List<Member> members = new ArrayList<>();
+        List<String> problems = new ArrayList<>();
+        if (!Files.exists(path)) return new MemberReadResult(members, problems);
+        ObjectReader reader = MAPPER.readerFor(Member.class);
+        List<TokenBuffer> chunk = new ArrayList<>();
+        int index = 0;
+        try (InputStream is = Files.newInputStream(path);
+             JsonParser parser = MAPPER.getFactory().createParser(is)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                problems.add("root is not a JSON array");
+                return new MemberReadResult(members, problems);
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+                TokenBuffer record = TokenBuffer.asCopyOfValue(parser);
+                // 不是对象的元素记为 null，转换时报告
+                chunk.add(token == JsonToken.START_OBJECT ? record : null);
+                index++;
+                if (chunk.size() >= READ_CHUNK_SIZE) {
+                    convertChunk(reader, chunk, index - chunk.size(), parallel, members, problems);
+                    chunk.clear();
                 }
             }
-        } catch (Exception ignored) {
-
+        } catch (IOException e) {
+            // 语法错误（例如文件被截断）：保留之前读出的记录
+            problems.add("record " + index + ": corrupt JSON, stopped reading (" + e.getMessage().lines().findFirst().orElse("") + ")");
+        } catch (Exception e) {
+            problems.add("record " + index + ": " + e.getMessage());
+        }
+        convertChunk(reader, chunk, index - chunk.size(), parallel, members, problems);
+        return new MemberReadResult(members, problems);
+    }
 
+    private static final int READ_CHUNK_SIZE = 4096;
+
+    private static void convertChunk(ObjectReader reader, List<TokenBuffer> chunk, int firstIndex, boolean parallel,
+                                     List<Member> members, List<String> problems) {
+        Object[] converted = new Object[chunk.size()];
+        IntStream indexes = IntStream.range(0, chunk.size());
+        (parallel ? indexes.parallel() : indexes).forEach(i -> {
+            TokenBuffer record = chunk.get(i);
+            if (record == null) {
+                converted[i] = "record " + (firstIndex + i) + ": not a JSON object";
+                return;
+            }
+            try (JsonParser recordParser = record.asParser()) {
+                converted[i] = reader.readValue(recordParser);
+            } catch (Exception e) {
+                converted[i] = "record " + (firstIndex + i) + ": " + e.getMessage().lines().findFirst().orElse("");
+            }
+        });
+        for (Object result : converted) {
+            if (result instanceof Member m) members.add(m);
+            else if (result instanceof String problem) problems.add(problem);
         }
-        return loaded;
     }
 
     public static List<Member> readMembersFromDefaultLocation() {
@@ -121,6 +186,29 @@ public final class JsonUtils {
         Files.writeString(path, json);
     }
 
+    public static void writeArray(Stream<?> items, OutputStream out) throws IOException {
+        /**
+         * 用 JsonGenerator 逐个写出数组元素，不在内存中拼出整个 JSON   Stream -> JSON array
+         * out 不会被关闭，由调用方负责
+         */
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            Iterator<?> it = items.iterator();
+            while (it.hasNext()) {
+                generator.writeObject(it.next());
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    public static Member jsonToMember(JsonNode node) {
+        /**
+         * 按 memberType 把 JsonNode 转为具体的 Member 子类，失败时返回 null
+         */
+        return convertNodeToMember(node);
+    }
+
     private static Member convertNodeToMember(JsonNode node) {
         try {
             JsonNode typeNode = node.get("memberType");
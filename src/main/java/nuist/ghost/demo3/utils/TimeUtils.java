@@ -6,14 +6,40 @@ package nuist.ghost.demo3.utils;
  */
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
 
 public class TimeUtils {
     private TimeUtils() {}
 
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:ss").withResolverStyle(ResolverStyle.STRICT);
+
     // 返回当前时间字符串，格式精确到秒（yyyy-MM-dd HH:mm:ss）
     public static String currentTimestamp() {
         DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         return LocalDateTime.now().format(FORMATTER);
     }
+
+    // 当前时间对应的秒数（本地时间按 UTC 换算，只用于紧凑存储，formatEpochSecond 可还原）
+    public static long currentEpochSecond() {
+        return LocalDateTime.now().withNano(0).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static String formatEpochSecond(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC).format(TIMESTAMP_FORMAT);
+    }
+
+    // 解析 yyyy-MM-dd HH:mm:ss；格式不符或无法原样还原时返回 null
+    public static Long parseEpochSecond(String timestamp) {
+        if (timestamp == null) return null;
+        try {
+            long epochSecond = LocalDateTime.parse(timestamp, TIMESTAMP_FORMAT).toEpochSecond(ZoneOffset.UTC);
+            return formatEpochSecond(epochSecond).equals(timestamp) ? epochSecond : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
 }
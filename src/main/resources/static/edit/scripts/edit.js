@@ -204,7 +204,6 @@ async function handleSubmit(event) {
 
     try {
         await api.updateMember(memberId, payload);
-        await api.exportMembers();
         showSuccess('Saved successfully. Redirecting...');
         setTimeout(() => {
             window.location.href = '/menu/index.html';
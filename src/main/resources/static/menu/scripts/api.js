@@ -1,4 +1,4 @@
-export { fetchMemberById, fetchMemberList, createMember, updateMember, deleteMember, exportMembers, promoteMember, demoteMember, fetchMemberByName, fetchMemberByIsProbation, fetchMemberByInternshipScoreGreaterThan, fetchMembersByPosition, fetchMemberByStudentID, regularizeMember };
+export { fetchMemberById, fetchMemberList, createMember, updateMember, deleteMember, exportMembers, promoteMember, demoteMember, fetchMemberByName, fetchMemberByIsProbation, fetchMemberByInternshipScoreGreaterThan, fetchMembersByPosition, fetchMemberByStudentID, searchMembers, regularizeMember };
 
 const API_BASE = '/api';
 const MEMBERS_BASE = API_BASE + '/members';
@@ -20,6 +20,8 @@ function mapHttpError(status, backendMessage, url) {
             return '请求方法不被允许（405），请检查后端是 GET/POST/DELETE 还是其他。';
         case 409:
             return '后端已存在该成员（409）。';
+        case 412:
+            return '该成员已被其他人修改，请刷新后重试（412）。';
         case 500:
             return '服务器内部错误（500）。';
         default:
@@ -28,7 +30,10 @@ function mapHttpError(status, backendMessage, url) {
     }
 }
 
-async function request(url, options = {}) {
+// 最近一次读取到的成员 ETag，更新时作为 If-Match 发送，避免覆盖别人的修改
+const memberEtags = new Map();
+
+async function request(url, options = {}, onResponse = null) {
     let res;
     try {
         res = await fetch(url, options);
@@ -61,6 +66,7 @@ async function request(url, options = {}) {
         throw err;
     }
 
+    if (onResponse) onResponse(res);
     return payload;
 }
 
@@ -69,18 +75,31 @@ async function request(url, options = {}) {
  * 通常只需要 id 和 name 字段
  */
 async function fetchMemberList() {
-    await request(ADMIN_MEMBERS_BASE + '/sort-by-id' , { method: 'POST' });
     return request(MEMBERS_BASE);
 }
 
+function rememberEtag(id) {
+    return (res) => {
+        const etag = res.headers.get('ETag');
+        if (etag) memberEtags.set(String(id), etag);
+    };
+}
+
 async function fetchMemberById(id) {
-    return request(MEMBERS_BASE + '/' + encodeURIComponent(id));
+    return request(MEMBERS_BASE + '/' + encodeURIComponent(id), {}, rememberEtag(id));
 }
 
 async function fetchMemberByName(name) {
     return request(MEMBERS_BASE + '/name/' + encodeURIComponent(name));
 }
 
+// 输入即搜索：field 为 'name' / 'studentID'，不传则两者都搜
+async function searchMembers(query, field, limit = 20) {
+    const params = new URLSearchParams({ q: query, limit: String(limit) });
+    if (field) params.set('field', field);
+    return request(MEMBERS_BASE + '/search?' + params.toString());
+}
+
 async function fetchMemberByStudentID(studentID) {
     return request(MEMBERS_BASE + '/student-id/' + encodeURIComponent(studentID));
 }
@@ -93,6 +112,7 @@ async function fetchMemberByIsProbation(isProbation) {
     }
 }
 
+// 结果按实习分从高到低、同分按 id 排序（分页游标为 after + afterScore）
 async function fetchMemberByInternshipScoreGreaterThan(score) {
     return request(MEMBERS_BASE + '/internship-score-greater-than/' + encodeURIComponent(score));
 }
@@ -107,46 +127,42 @@ async function createMember(data) {
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify(data)
     });
-    await request(ADMIN_MEMBERS_BASE + '/sort-by-id' , { method: 'POST' });
     return r;
 }
 
 async function deleteMember(id) {
     const r = await request(MEMBERS_BASE + '/' + encodeURIComponent(id) , { method: 'DELETE' });
-    await request(ADMIN_MEMBERS_BASE + '/sort-by-id' , { method: 'POST' });
     return r
 }
 
 async function exportMembers() {
     const r = await request(ADMIN_MEMBERS_BASE + '/export', { method: 'POST' });
-    await request(ADMIN_MEMBERS_BASE + '/sort-by-id' , { method: 'POST' });
     return r;
 }
 
 async function promoteMember(id) {
     const r = await request(ADMIN_MEMBERS_BASE + '/' + encodeURIComponent(id) + '/promote', { method: 'POST' });
-    await request(ADMIN_MEMBERS_BASE + '/sort-by-id' , { method: 'POST' });
     return r;
 }
 
 async function demoteMember(id) {
     const r = await request(ADMIN_MEMBERS_BASE + '/' + encodeURIComponent(id) + '/demote', { method: 'POST' });
-    await request(ADMIN_MEMBERS_BASE + '/sort-by-id' , { method: 'POST' });
     return r;
 }
 
 async function updateMember(id, data) {
+    const headers = { 'Content-Type': 'application/json' };
+    const etag = memberEtags.get(String(id));
+    if (etag) headers['If-Match'] = etag;
     const r = await request(MEMBERS_BASE + '/' + encodeURIComponent(id), {
         method: 'PUT',
-        headers: { 'Content-Type': 'application/json' },
+        headers,
         body: JSON.stringify(data)
-    });
-    await request(ADMIN_MEMBERS_BASE + '/sort-by-id', { method: 'POST' });
+    }, rememberEtag(id));
     return r;
 }
 
 async function regularizeMember(id) {
     const r = await request(ADMIN_MEMBERS_BASE + '/' + encodeURIComponent(id) + '/regularize', { method: 'POST' });
-    await request(ADMIN_MEMBERS_BASE + '/sort-by-id' , { method: 'POST' });
     return r;
 }
\ No newline at end of file
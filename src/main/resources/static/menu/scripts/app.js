@@ -14,6 +14,7 @@ import { debounce } from './utils.js';
 // State
 let currentFilteredMembers = [];
 let activePopoverCloser = null;
+let filterSeq = 0; // 只渲染最后一次筛选/搜索的结果，先发后到的旧响应直接丢弃
 
 // --- Initialization ---
 export async function init() {
@@ -169,6 +170,14 @@ function initFilterSelector() {
         if (e.key === 'Enter') triggerSearch();
     });
 
+    // 姓名 / 学号边输入边搜索
+    const debouncedSearch = debounce(() => {
+        if (label.textContent === 'Search by Name' || label.textContent === 'Search by StudentID') {
+            triggerSearch();
+        }
+    }, 200);
+    searchInput.addEventListener('input', debouncedSearch);
+
     // Regularize Listeners
     regularizeBtn.addEventListener('click', () => {
         regularizePopover.hidden = false;
@@ -213,6 +222,7 @@ function initFilterSelector() {
 
 async function applyFilter(filterType, filterValue) {
     // ui.showLoading(); // Optional
+    const seq = ++filterSeq;
     try {
         let members = [];
         switch (filterType) {
@@ -230,7 +240,7 @@ async function applyFilter(filterType, filterValue) {
                 break;
             case 'SearchByName':
                 if (!filterValue?.trim()) return;
-                members = await api.fetchMemberByName(filterValue.trim());
+                members = await api.searchMembers(filterValue.trim(), 'name');
                 break;
             case 'SearchByID':
                 if (!filterValue?.trim()) return;
@@ -241,19 +251,18 @@ async function applyFilter(filterType, filterValue) {
                 break;
             case 'SearchByStudentID':
                 if (!filterValue?.trim()) return;
-                try {
-                    const m = await api.fetchMemberByStudentID(filterValue.trim());
-                    members = m ? [m] : [];
-                } catch { members = []; }
+                members = await api.searchMembers(filterValue.trim(), 'studentID');
                 break;
             default:
                 console.warn('Unknown filter:', filterType);
                 return;
         }
         
+        if (seq !== filterSeq) return;
         currentFilteredMembers = members;
         ui.renderMembersSequentially(members);
     } catch (error) {
+        if (seq !== filterSeq) return;
         console.error(error);
         ui.showError(error.message);
     }
@@ -314,7 +323,6 @@ function bindAddMemberFormEvents() {
         const resultEl = document.getElementById('SubmissionResult');
         try {
             await api.createMember(data);
-            await api.exportMembers();
             if (resultEl) resultEl.textContent = 'Member created.';
             await refreshMemberList();
         } catch (error) {
@@ -398,7 +406,6 @@ function bindMemberDetailEvents(member) {
                 confirm.disabled = true;
                 try {
                     await apiFunc(member.id);
-                    await api.exportMembers();
                     await refreshMemberList();
                     
                     if (result) {
@@ -0,0 +1,196 @@
+package nuist.ghost.demo3.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MemberControllerTest {
+
+    /*成员文件和日志写到临时目录，不碰项目里的 data/*/
+    @TempDir
+    static Path dataDir;
+
+    @DynamicPropertySource
+    static void dataDir(DynamicPropertyRegistry registry) {
+        registry.add("members.data-dir", dataDir::toString);
+    }
+
+    @Autowired
+    private MockMvc mvc;
+
+    @BeforeEach
+    void clear() throws Exception {
+        mvc.perform(delete("/api/admin/members")).andExpect(status().isNoContent());
+    }
+
+    private static String request(String name, String studentID, boolean probation, String interviewScore) {
+        return """
+                {"name": "%s", "studentID": "%s", "memberType": "RegularMember", "isProbation": %s,
+                 "interviewScore": "%s", "internshipScore": "0", "salaryScore": "0"}"""
+                .formatted(name, studentID, probation, interviewScore);
+    }
+
+    private long create(String name, String studentID, boolean probation, String interviewScore) throws Exception {
+        MvcResult result = mvc.perform(post("/api/members").contentType(MediaType.APPLICATION_JSON)
+                        .content(request(name, studentID, probation, interviewScore)))
+                .andExpect(status().isOk())
+                .andReturn();
+        return ((Number) JsonPath.read(result.getResponse().getContentAsString(), "$.id")).longValue();
+    }
+
+    private ResultActions list(MockHttpServletRequestBuilder request) throws Exception {
+        /*列表接口用 StreamingResponseBody 异步写出，要再分派一次才能拿到响应体*/
+        ResultActions actions = mvc.perform(request);
+        MvcResult result = actions.andReturn();
+        return result.getRequest().isAsyncStarted() ? mvc.perform(asyncDispatch(result)) : actions;
+    }
+
+    @Test
+    void batchCreateReportsEveryRequestOnItsOwn() throws Exception {
+        String body = "[" + request("a", "202500000001", true, "10") + ","
+                + request("bad", "123", true, "10") + ","
+                + request("dup", "202500000001", true, "10") + "]";
+        mvc.perform(post("/api/members/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].index").value(contains(0, 1, 2)))
+                .andExpect(jsonPath("$[*].status").value(contains(201, 400, 409)))
+                .andExpect(jsonPath("$[0].member.name").value("a"))
+                .andExpect(jsonPath("$[1].member").value(nullValue()))
+                .andExpect(jsonPath("$[2].message").isNotEmpty());
+
+        // 失败的条目没有留下任何成员
+        list(get("/api/members"))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    void bulkOperationGivesOneResultPerId() throws Exception {
+        long intern = create("intern", "202500000001", true, "10");
+        long official = create("official", "202500000002", false, "10");
+        long missing = official + 100;
+
+        mvc.perform(post("/api/admin/members/bulk/regularize").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\": [" + intern + ", " + official + ", " + missing + "]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id").value(contains((int) intern, (int) official, (int) missing)))
+                .andExpect(jsonPath("$[*].status").value(contains(200, 400, 404)))
+                .andExpect(jsonPath("$[0].member.probation").value(false));
+
+        mvc.perform(post("/api/admin/members/bulk/fire").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\": [" + intern + "]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void staleIfMatchIsRejectedWith412() throws Exception {
+        long id = create("a", "202500000001", true, "10");
+        String etag = mvc.perform(get("/api/members/" + id))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        String renamed = mvc.perform(put("/api/members/" + id).contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_MATCH, etag).content("{\"name\": \"b\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+                .andExpect(jsonPath("$.name").value("b"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // 第二个客户端还拿着旧的 ETag
+        mvc.perform(put("/api/members/" + id).contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_MATCH, etag).content("{\"name\": \"c\"}"))
+                .andExpect(status().isPreconditionFailed());
+        mvc.perform(get("/api/members/" + id))
+                .andExpect(header().string(HttpHeaders.ETAG, renamed))
+                .andExpect(jsonPath("$.name").value("b"));
+    }
+
+    @Test
+    void ifMatchUsesTheStrongComparison() throws Exception {
+        long id = create("a", "202500000001", true, "10");
+        String etag = mvc.perform(get("/api/members/" + id))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // 弱标签即使值相同也不匹配
+        mvc.perform(put("/api/members/" + id).contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_MATCH, "W/" + etag).content("{\"name\": \"b\"}"))
+                .andExpect(status().isPreconditionFailed());
+        mvc.perform(put("/api/members/" + id).contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_MATCH, "W/" + etag + ", " + etag).content("{\"name\": \"b\"}"))
+                .andExpect(status().isOk());
+
+        // If-Match: * 要求成员存在，不存在时是 412 而不是 404
+        mvc.perform(put("/api/members/" + (id + 100)).contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_MATCH, "*").content("{\"name\": \"c\"}"))
+                .andExpect(status().isPreconditionFailed());
+        mvc.perform(put("/api/members/" + (id + 100)).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"c\"}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void unchangedListIsNotModifiedUntilAWrite() throws Exception {
+        create("a", "202500000001", true, "10");
+        String etag = mvc.perform(get("/api/members").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/api/members").param("limit", "10").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        create("b", "202500000002", true, "10");
+        list(get("/api/members").param("limit", "10").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    void scoreRangePagesCarryTheScoreCursor() throws Exception {
+        create("a", "202500000001", true, "14");
+        long b = create("b", "202500000002", false, "12");
+        create("c", "202500000003", true, "8");
+
+        list(get("/api/members/interview-score/gt/5").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name").value(contains("a", "b")))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("after=" + b)))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("afterScore=12.0")));
+
+        MvcResult last = list(get("/api/members/interview-score/gt/5")
+                        .param("limit", "2").param("after", String.valueOf(b)).param("afterScore", "12.0"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name").value(contains("c")))
+                .andReturn();
+        assertNull(last.getResponse().getHeader(HttpHeaders.LINK));
+    }
+}
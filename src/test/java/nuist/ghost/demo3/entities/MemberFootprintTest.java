@@ -0,0 +1,130 @@
+package nuist.ghost.demo3.entities;
+
+import nuist.ghost.demo3.utils.JsonUtils;
+import nuist.ghost.demo3.utils.TimeUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemberFootprintTest {
+
+    private static final int COUNT = 200_000;
+
+    /* 压缩前的字段布局：String 学号、String 入会时间、Long id、完整邮箱 */
+    @SuppressWarnings("unused")
+    static final class LegacyMember {
+        Long id;
+        String name;
+        String studentID;
+        boolean isProbation;
+        String email;
+        String phoneNumber;
+        double interviewScore;
+        double internshipScore;
+        double salaryScore;
+        String joinDate;
+    }
+
+    private static LegacyMember legacy(int i) {
+        LegacyMember m = new LegacyMember();
+        m.id = (long) i + 1000;
+        m.name = "member" + i;
+        m.studentID = Long.toString(202500000000L + i);
+        m.isProbation = true;
+        m.email = "member" + i + "@nuist.edu.cn";
+        m.phoneNumber = Long.toString(13800000000L + i);
+        m.joinDate = TimeUtils.currentTimestamp();
+        return m;
+    }
+
+    private static Member compact(int i) {
+        Member m = new RegularMember("member" + i, Long.toString(202500000000L + i));
+        m.setId((long) i + 1000);
+        m.setEmail("member" + i + "@nuist.edu.cn");
+        m.setPhoneNumber(Long.toString(13800000000L + i));
+        return m;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long bytesPerObject(IntFunction<Object> factory) {
+        Object[] keep = new Object[COUNT];
+        long before = usedHeap();
+        for (int i = 0; i < COUNT; i++) {
+            keep[i] = factory.apply(i);
+        }
+        long after = usedHeap();
+        long perObject = (after - before) / COUNT;
+        assertEquals(COUNT, keep.length); // 保证 keep 在测量结束前仍然可达
+        return perObject;
+    }
+
+    /* 用 System.gc() 前后的堆差估算大小，结果随 JVM 和 GC 波动（mvn test -Pbenchmark 运行） */
+    @Tag("benchmark")
+    @Test
+    void compactMemberUsesLessHeapThanLegacyLayout() {
+        long legacyBytes = bytesPerObject(MemberFootprintTest::legacy);
+        long compactBytes = bytesPerObject(MemberFootprintTest::compact);
+        System.out.println("bytes per member: legacy=" + legacyBytes + ", compact=" + compactBytes);
+        assertTrue(compactBytes < legacyBytes,
+                "compact=" + compactBytes + " bytes should be below legacy=" + legacyBytes + " bytes");
+    }
+
+    @Test
+    void jsonIsUnchanged() throws Exception {
+        Member m = new President("Chuhang Zhang", "012583910033");
+        m.setId(0L);
+        m.setProbation(false);
+        m.setEmail("ChuhangZhang@gk.com");
+        m.setPhoneNumber("114514");
+        m.setInterviewScore(14.5);
+        m.setJoinDate("2025-12-18 22:27:05");
+        String json = JsonUtils.objectToJson(m);
+        assertTrue(json.startsWith("{\"id\":0,\"name\":\"Chuhang Zhang\",\"studentID\":\"012583910033\","
+                + "\"email\":\"ChuhangZhang@gk.com\",\"phoneNumber\":\"114514\",\"interviewScore\":14.5,"
+                + "\"internshipScore\":0.0,\"salaryScore\":0.0,\"joinDate\":\"2025-12-18 22:27:05\","
+                + "\"memberType\":\"President\",\"info\":"), json);
+        assertTrue(json.endsWith(",\"probation\":false}"), json);
+    }
+
+    @Test
+    void unusualValuesRoundTrip() {
+        Member m = new RegularMember("x", "A123");
+        m.setEmail("no-at-sign");
+        m.setJoinDate("2025/12/18");
+        assertEquals("A123", m.getStudentID());
+        assertEquals("no-at-sign", m.getEmail());
+        assertEquals("2025/12/18", m.getJoinDate());
+
+        m.setStudentID(null);
+        m.setEmail("a@b@c.com");
+        m.setJoinDate(null);
+        m.setId(null);
+        assertNull(m.getStudentID());
+        assertEquals("a@b@c.com", m.getEmail());
+        assertNull(m.getJoinDate());
+        assertNull(m.getId());
+    }
+
+    @Test
+    void sharedEmailDomainsAreBounded() {
+        // 用户填写的域名各不相同时，共享表也不会超过上限
+        for (int i = 0; i < 2 * Member.MAX_SHARED_DOMAINS; i++) {
+            Member m = new RegularMember("x", "A123");
+            m.setEmail("user@domain" + i + ".example");
+            assertEquals("user@domain" + i + ".example", m.getEmail());
+        }
+        assertTrue(Member.SHARED_DOMAINS.size() <= Member.MAX_SHARED_DOMAINS);
+    }
+}
@@ -0,0 +1,113 @@
+package nuist.ghost.demo3.persistence;
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.President;
+import nuist.ghost.demo3.entities.RegularMember;
+import nuist.ghost.demo3.entities.SectionHead;
+import nuist.ghost.demo3.utils.JsonUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MemberBinaryFormatTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<Member> sample() {
+        Member president = new President("张初航", "202583910033");
+        president.setId(0L);
+        president.setProbation(false);
+        president.setEmail("ChuhangZhang@gk.com");
+        president.setPhoneNumber("114514");
+        president.setInterviewScore(14.5);
+        president.setSalaryScore(3412);
+        president.setJoinDate("2025-12-18 22:27:05");
+
+        Member head = new SectionHead("Kai Cai", "202583910034");
+        head.setId(7L);
+        head.setInternshipScore(-0.25);
+        head.setJoinDate("2026-01-01 08:00:00");
+
+        // email / phone 为 null，id 尚未分配
+        Member regular = new RegularMember("", null);
+        regular.setJoinDate(null);
+        return List.of(president, head, regular);
+    }
+
+    @Test
+    void roundTripKeepsEveryField() throws IOException {
+        Path bin = dir.resolve("members.bin");
+        List<Member> members = sample();
+        MemberBinaryFormat.write(members, bin);
+        // 逐字段比较：两边都序列化为 JSON
+        assertEquals(JsonUtils.objectToJson(members), JsonUtils.objectToJson(MemberBinaryFormat.read(bin)));
+    }
+
+    @Test
+    void snapshotCanBeReplacedRightAfterReadingIt() throws IOException {
+        Path bin = dir.resolve("members.bin");
+        MemberBinaryFormat.write(sample(), bin);
+        List<Member> loaded = MemberBinaryFormat.read(bin);
+        // 读取不保留映射，紧接着的原子替换不会被占用的文件挡住
+        MemberBinaryFormat.write(loaded.subList(0, 2), bin);
+        assertEquals(2, MemberBinaryFormat.read(bin).size());
+    }
+
+    @Test
+    void convertsBetweenJsonAndBinary() throws IOException {
+        Path json = dir.resolve("members.json");
+        Path bin = dir.resolve("members.bin");
+        Path back = dir.resolve("back.json");
+        MemberSnapshotWriter.writeJson(sample(), json);
+
+        assertEquals(3, MemberBinaryFormat.jsonToBinary(json, bin));
+        assertEquals(3, MemberBinaryFormat.binaryToJson(bin, back));
+        assertEquals(Files.readString(json), Files.readString(back));
+    }
+
+    @Test
+    void rejectsCorruptOrForeignFiles() throws IOException {
+        Path bin = dir.resolve("members.bin");
+        MemberBinaryFormat.write(sample(), bin);
+        byte[] bytes = Files.readAllBytes(bin);
+
+        bytes[20] ^= 1;
+        Files.write(bin, bytes);
+        assertThrows(IOException.class, () -> MemberBinaryFormat.read(bin));
+
+        Files.writeString(bin, "[{\"id\": 1}]");
+        assertThrows(IOException.class, () -> MemberBinaryFormat.read(bin));
+    }
+
+    @Test
+    void failedWriteKeepsThePreviousFileAndLeavesNoTempFile() throws IOException {
+        Path bin = dir.resolve("members.bin");
+        MemberBinaryFormat.write(sample(), bin);
+        byte[] previous = Files.readAllBytes(bin);
+
+        // 写入过程中集合变了：size() 与实际写出的条数不一致
+        List<Member> changing = new ArrayList<>(sample()) {
+            @Override
+            public int size() {
+                return super.size() + 1;
+            }
+        };
+        assertThrows(IOException.class, () -> MemberBinaryFormat.write(changing, bin));
+
+        assertArrayEquals(previous, Files.readAllBytes(bin));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of("members.bin"), files.map(p -> p.getFileName().toString()).toList());
+        }
+    }
+}
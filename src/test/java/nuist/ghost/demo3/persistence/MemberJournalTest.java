@@ -0,0 +1,190 @@
+package nuist.ghost.demo3.persistence;
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.RegularMember;
+import nuist.ghost.demo3.entities.SectionHead;
+import nuist.ghost.demo3.repository.MemberRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemberJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private MemberJournal started(MemberRepository repository) throws IOException {
+        MemberJournal journal = new MemberJournal(repository, dir.toString(), true, 1);
+        journal.replayInto(new MemberRepository());
+        journal.start();
+        return journal;
+    }
+
+    private MemberRepository replayed() throws IOException {
+        MemberRepository repository = new MemberRepository();
+        new MemberJournal(new MemberRepository(), dir.toString(), true, 1).replayInto(repository);
+        return repository;
+    }
+
+    private static List<String> studentIDs(MemberRepository repository) {
+        return repository.findAll().stream().map(Member::getStudentID).toList();
+    }
+
+    private List<String> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir.resolve("journal"))) {
+            return files.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    @Test
+    void replayAppliesUpsertDeleteAndClearInOrder() throws Exception {
+        MemberRepository repository = new MemberRepository();
+        MemberJournal journal = started(repository);
+        Member a = repository.save(new RegularMember("a", "202500000001"));
+        repository.save(new RegularMember("b", "202500000002"));
+        repository.deleteById(a.getId());
+        journal.flush();
+        assertEquals(List.of("202500000002"), studentIDs(replayed()));
+
+        repository.deleteAll();
+        Member c = repository.save(new SectionHead("c", "202500000003"));
+        journal.close();
+
+        MemberRepository restored = replayed();
+        assertEquals(List.of("202500000003"), studentIDs(restored));
+        assertEquals("SectionHead", restored.findById(c.getId()).orElseThrow().getMemberType());
+    }
+
+    @Test
+    void tornLastLineIsSkippedAndAppendingMovesToANewSegment() throws Exception {
+        MemberRepository repository = new MemberRepository();
+        MemberJournal journal = started(repository);
+        repository.save(new RegularMember("a", "202500000001"));
+        journal.close();
+        Path segment = dir.resolve("journal").resolve(segments().get(0));
+        Files.writeString(segment, "{\"op\":\"UPSERT\",\"id\":1,\"member\":{\"na", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        MemberRepository restored = new MemberRepository();
+        MemberJournal reopened = new MemberJournal(restored, dir.toString(), true, 1);
+        assertEquals(1, reopened.replayInto(restored));
+        assertEquals(List.of("202500000001"), studentIDs(restored));
+
+        reopened.start();
+        restored.save(new RegularMember("b", "202500000002"));
+        reopened.close();
+        assertEquals(2, segments().size());
+        assertEquals(List.of("202500000001", "202500000002"), studentIDs(replayed()));
+    }
+
+    @Test
+    void linesWithoutAMemberOrAnIdAreSkipped() throws Exception {
+        MemberRepository repository = new MemberRepository();
+        MemberJournal journal = started(repository);
+        repository.save(new RegularMember("a", "202500000001"));
+        journal.close();
+        Path segment = dir.resolve("journal").resolve(segments().get(0));
+        Files.writeString(segment, String.join("\n",
+                "{\"op\":\"UPSERT\"}",
+                "{\"op\":\"UPSERT\",\"member\":7}",
+                "{\"op\":\"UPSERT\",\"member\":{\"name\":\"b\",\"studentID\":\"202500000002\",\"memberType\":\"RegularMember\"}}",
+                "{\"op\":\"DELETE\"}",
+                "{\"op\":\"DELETE\",\"id\":\"x\"}") + "\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        MemberRepository restored = new MemberRepository();
+        assertEquals(1, new MemberJournal(restored, dir.toString(), true, 1).replayInto(restored));
+        assertEquals(List.of("202500000001"), studentIDs(restored));
+    }
+
+    @Test
+    void segmentsBeforeARotationCanBeDiscarded() throws Exception {
+        MemberRepository repository = new MemberRepository();
+        MemberJournal journal = started(repository);
+        repository.save(new RegularMember("a", "202500000001"));
+        long firstKept = journal.rotate();
+        repository.save(new RegularMember("b", "202500000002"));
+        journal.flush();
+
+        journal.discardBefore(firstKept);
+        // 被丢弃的段由快照覆盖，重放只剩下轮换之后的修改
+        assertEquals(List.of("202500000002"), studentIDs(replayed()));
+        assertEquals(1, segments().size());
+        journal.close();
+    }
+
+    @Test
+    void awaitDurableReturnsOnceTheCallersChangeIsOnDisk() throws Exception {
+        MemberRepository repository = new MemberRepository();
+        // 攒批间隔很长：awaitDurable 必须等这一批 fsync，而不是提交到队列就返回
+        MemberJournal journal = new MemberJournal(repository, dir.toString(), true, 200);
+        journal.replayInto(new MemberRepository());
+        journal.start();
+        repository.save(new RegularMember("a", "202500000001"));
+        journal.awaitDurable();
+        assertEquals(List.of("202500000001"), studentIDs(replayed()));
+        journal.close();
+    }
+
+    @Test
+    void aLoneChangeIsWrittenWithoutWaitingForTheBatchWindow() throws Exception {
+        MemberRepository repository = new MemberRepository();
+        // 攒批窗口比超时还长：队列里只有一条记录时不能等这个窗口
+        MemberJournal journal = new MemberJournal(repository, dir.toString(), true, 60_000);
+        journal.replayInto(new MemberRepository());
+        journal.start();
+        long start = System.nanoTime();
+        repository.save(new RegularMember("a", "202500000001"));
+        journal.awaitDurable();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        assertEquals(List.of("202500000001"), studentIDs(replayed()));
+        journal.close();
+    }
+
+    @Test
+    void awaitDurableThrowsWhenTheCallersChangeWasLost() throws Exception {
+        Files.writeString(dir.resolve("journal"), "");
+        MemberRepository repository = new MemberRepository();
+        MemberJournal journal = started(repository);
+        repository.save(new RegularMember("a", "202500000001"));
+
+        // awaitDurable 等的是当前线程的修改，不能换到超时线程里调用
+        assertThrows(IllegalStateException.class, journal::awaitDurable);
+        // 结果只等待一次
+        journal.awaitDurable();
+        journal.close();
+    }
+
+    @Test
+    void writeFailureIsReportedToTheNextFlushInsteadOfHanging() throws Exception {
+        // journal 目录的位置是一个普通文件，创建段文件必然失败
+        Files.writeString(dir.resolve("journal"), "");
+        MemberRepository repository = new MemberRepository();
+        MemberJournal journal = started(repository);
+        repository.save(new RegularMember("a", "202500000001"));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertThrows(IllegalStateException.class, journal::flush);
+            assertThrows(IllegalStateException.class, () -> {
+                repository.save(new RegularMember("b", "202500000002"));
+                journal.rotate();
+            });
+            // 失败只报告一次；之后没有丢失的记录时 flush 正常返回
+            journal.flush();
+            journal.close();
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package nuist.ghost.demo3.persistence;
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.RegularMember;
+import nuist.ghost.demo3.utils.JsonUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MemberSnapshotWriterTest {
+
+    @TempDir
+    Path dir;
+
+    private static Member member(long id, String name) {
+        Member m = new RegularMember(name, String.valueOf(202500000000L + id));
+        m.setId(id);
+        return m;
+    }
+
+    private List<String> files() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    @Test
+    void successfulWriteReplacesTheFileThroughATempFile() throws Exception {
+        Path target = dir.resolve("members.json");
+        Files.writeString(target, "[]", StandardCharsets.UTF_8);
+
+        MemberSnapshotWriter.writeJson(List.of(member(1, "a"), member(2, "b")), target);
+
+        assertEquals(List.of("a", "b"), JsonUtils.readMembersFromPath(target).stream().map(Member::getName).toList());
+        // 临时文件已经重命名为目标文件
+        assertEquals(List.of("members.json"), files());
+    }
+
+    @Test
+    void failedWriteKeepsThePreviousFileAndLeavesNoTempFile() throws Exception {
+        Path target = dir.resolve("members.json");
+        MemberSnapshotWriter.writeJson(List.of(member(1, "a")), target);
+        String previous = Files.readString(target, StandardCharsets.UTF_8);
+
+        // 第二条记录序列化时抛异常，此时临时文件里已经写了一部分
+        Member broken = new RegularMember("b", "202500000002") {
+            @Override
+            public String getEmail() {
+                throw new IllegalStateException("cannot serialize");
+            }
+        };
+        broken.setId(2L);
+        assertThrows(Exception.class, () -> MemberSnapshotWriter.writeJson(List.of(member(1, "a"), broken), target));
+
+        assertEquals(previous, Files.readString(target, StandardCharsets.UTF_8));
+        assertEquals(List.of("members.json"), files());
+    }
+}
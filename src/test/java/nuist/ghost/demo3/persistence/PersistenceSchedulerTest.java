@@ -0,0 +1,74 @@
+package nuist.ghost.demo3.persistence;
+
+import nuist.ghost.demo3.entities.RegularMember;
+import nuist.ghost.demo3.repository.MemberRepository;
+import nuist.ghost.demo3.utils.JsonUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersistenceSchedulerTest {
+
+    /*周期远长于测试本身：定时器不会触发，每个周期由测试调用 snapshotIfDirty 代替*/
+    private static final long INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    Path dir;
+
+    private PersistenceScheduler started(MemberRepository repository) {
+        // 日志不启用：只看快照本身
+        MemberJournal journal = new MemberJournal(repository, dir.toString(), false, 1);
+        PersistenceScheduler scheduler = new PersistenceScheduler(repository, journal, dir.toString(), INTERVAL_MILLIS, "json");
+        scheduler.start();
+        return scheduler;
+    }
+
+    private static Object fileKey(Path path) throws Exception {
+        /*每次快照都写新的临时文件再重命名过来，文件换了 inode 就说明又写了一次*/
+        return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+
+    @Test
+    void aBurstOfChangesIsWrittenOnce() throws Exception {
+        MemberRepository repository = new MemberRepository();
+        PersistenceScheduler scheduler = started(repository);
+        Path json = dir.resolve("members.json");
+        for (int i = 0; i < 200; i++) {
+            repository.save(new RegularMember("m" + i, String.valueOf(202500000000L + i)));
+        }
+        // 修改本身不写文件，只标记
+        assertFalse(Files.exists(json));
+
+        scheduler.snapshotIfDirty();
+        assertEquals(200, JsonUtils.readMembersFromPath(json).size());
+        Object written = fileKey(json);
+
+        // 之后几个周期没有新的修改，不会再写
+        scheduler.snapshotIfDirty();
+        scheduler.snapshotIfDirty();
+        assertEquals(written, fileKey(json));
+        scheduler.shutdown();
+        assertEquals(written, fileKey(json));
+    }
+
+    @Test
+    void shutdownWritesPendingChanges() throws Exception {
+        MemberRepository repository = new MemberRepository();
+        PersistenceScheduler scheduler = started(repository);
+        repository.save(new RegularMember("a", "202500000001"));
+
+        // 周期还没到就关机：@PreDestroy 补写最后一次快照
+        scheduler.shutdown();
+        Path json = dir.resolve("members.json");
+        assertTrue(Files.exists(json));
+        assertEquals("a", JsonUtils.readMembersFromPath(json).get(0).getName());
+    }
+}
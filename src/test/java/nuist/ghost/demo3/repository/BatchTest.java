@@ -0,0 +1,119 @@
+package nuist.ghost.demo3.repository;
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.RegularMember;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchTest {
+
+    /* 记录每一轮通知带了几条修改 */
+    private static final class Rounds implements MemberChangeListener {
+        final List<Integer> sizes = new ArrayList<>();
+
+        @Override
+        public void onChange(Member before, Member after) {
+            sizes.add(1);
+        }
+
+        @Override
+        public void onChanges(List<Change> changes) {
+            sizes.add(changes.size());
+        }
+    }
+
+    private static Member renamed(Member source, String name) {
+        Member copy = new RegularMember(name, source.getStudentID());
+        copy.setId(source.getId());
+        return copy;
+    }
+
+    @Test
+    void aBatchIsPublishedAsOneVersionWithOneListenerRound() {
+        MemberRepository repository = new MemberRepository();
+        Rounds rounds = new Rounds();
+        repository.addChangeListener(rounds);
+        long version = repository.version();
+
+        List<Member> inserted = repository.insertAllIfAbsent(List.of(
+                new RegularMember("a", "202500000001"),
+                new RegularMember("b", "202500000002"),
+                new RegularMember("c", "202500000003")));
+
+        assertEquals(version + 1, repository.version());
+        assertEquals(List.of(3), rounds.sizes);
+        assertEquals(3, repository.snapshot().members().size());
+        assertEquals(inserted.get(1), repository.findByName("b").get(0));
+    }
+
+    @Test
+    void nothingIsPublishedBeforeTheBatchEnds() {
+        MemberRepository repository = new MemberRepository();
+        Member a = repository.save(new RegularMember("a", "202500000001"));
+        MemberSnapshot before = repository.snapshot();
+
+        repository.batch(() -> {
+            repository.compareAndReplace(renamed(a, "b"), a.getVersion());
+            Member b = repository.findById(a.getId()).orElseThrow();
+            repository.compareAndReplace(renamed(b, "a"), b.getVersion());
+            repository.save(new RegularMember("c", "202500000002"));
+            // 读者看到的仍是 batch 开始前的版本
+            assertEquals(before, repository.snapshot());
+            return null;
+        });
+
+        assertEquals(before.version() + 1, repository.version());
+        // 改名又改回来：最后的记录仍在原来的姓名桶里，中间的姓名已经去掉
+        assertEquals(List.of("202500000001"), repository.findByName("a").stream().map(Member::getStudentID).toList());
+        assertTrue(repository.findByName("b").isEmpty());
+        assertEquals(1, repository.search(repository.snapshot(), "a", true, false, 10).size());
+        assertTrue(repository.search(repository.snapshot(), "b", true, false, 10).isEmpty());
+    }
+
+    @Test
+    void aConcurrentCompareAndReplaceWaitsForTheBatch() throws Exception {
+        MemberRepository repository = new MemberRepository();
+        Member a = repository.save(new RegularMember("a", "202500000001"));
+        Member b = repository.save(new RegularMember("b", "202500000002"));
+        Rounds rounds = new Rounds();
+        repository.addChangeListener(rounds);
+        long version = repository.version();
+        boolean[] other = new boolean[1];
+        Thread cas = new Thread(() -> other[0] = repository.compareAndReplace(renamed(b, "y"), b.getVersion()));
+
+        repository.batch(() -> {
+            repository.compareAndReplace(renamed(a, "x"), a.getVersion());
+            cas.start();
+            // 等另一个线程阻塞在 batch 锁上，再改同一个成员第二次
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (cas.getState() != Thread.State.WAITING && cas.isAlive() && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            assertTrue(cas.isAlive());
+            Member x = repository.findById(a.getId()).orElseThrow();
+            repository.compareAndReplace(renamed(x, "z"), x.getVersion());
+            return null;
+        });
+        cas.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertFalse(cas.isAlive());
+        assertTrue(other[0]);
+        // batch 是一个版本、一轮通知，另一个线程的修改在它之后单独发布
+        assertEquals(List.of(2, 1), rounds.sizes);
+        assertEquals(version + 2, repository.version());
+        assertTrue(repository.findByName("a").isEmpty());
+        assertTrue(repository.findByName("x").isEmpty());
+        assertTrue(repository.findByName("b").isEmpty());
+        assertEquals(List.of(a.getId()), repository.findByName("z").stream().map(Member::getId).toList());
+        assertEquals(List.of(b.getId()), repository.findByName("y").stream().map(Member::getId).toList());
+        assertTrue(repository.search(repository.snapshot(), "x", true, false, 10).isEmpty());
+        assertEquals(1, repository.search(repository.snapshot(), "z", true, false, 10).size());
+    }
+}
@@ -0,0 +1,116 @@
+package nuist.ghost.demo3.repository;
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.RegularMember;
+import nuist.ghost.demo3.entities.SectionHead;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompareAndReplaceTest {
+
+    private static Member copyAs(Member source, boolean sectionHead) {
+        Member copy = sectionHead
+                ? new SectionHead(source.getName(), source.getStudentID())
+                : new RegularMember(source.getName(), source.getStudentID());
+        copy.setId(source.getId());
+        copy.setSalaryScore(source.getSalaryScore());
+        return copy;
+    }
+
+    @Test
+    void staleVersionIsRejected() {
+        MemberRepository repository = new MemberRepository();
+        Member original = repository.save(new RegularMember("a", "202500000001"));
+        long version = original.getVersion();
+
+        assertTrue(repository.compareAndReplace(copyAs(original, true), version));
+        assertFalse(repository.compareAndReplace(copyAs(original, false), version));
+        assertEquals("SectionHead", repository.findById(original.getId()).orElseThrow().getMemberType());
+        assertEquals(1, repository.findByMemberType("SectionHead").size());
+        assertEquals(0, repository.findByMemberType("RegularMember").size());
+    }
+
+    @Test
+    void theStoredRecordItselfIsNotAReplacement() {
+        MemberRepository repository = new MemberRepository();
+        Member original = repository.save(new RegularMember("a", "202500000001"));
+        long version = original.getVersion();
+
+        assertThrows(IllegalArgumentException.class, () -> repository.compareAndReplace(original, version));
+        assertEquals(version, repository.findById(original.getId()).orElseThrow().getVersion());
+    }
+
+    @Test
+    void recreatedMemberGetsANewVersion() {
+        MemberRepository repository = new MemberRepository();
+        Member first = repository.save(new RegularMember("a", "202500000001"));
+        long version = first.getVersion();
+        repository.deleteById(first.getId());
+        Member second = repository.save(new RegularMember("b", "202500000002"));
+
+        assertEquals(first.getId(), second.getId());
+        assertFalse(repository.compareAndReplace(copyAs(second, true), version));
+    }
+
+    @Test
+    void concurrentTypeChangesNeverLoseTheMemberOrAnUpdate() throws Exception {
+        MemberRepository repository = new MemberRepository();
+        Member original = repository.save(new RegularMember("a", "202500000001"));
+        long id = original.getId();
+        long firstVersion = original.getVersion();
+        int threads = 4;
+        int changesPerThread = 2000;
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger missing = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        Future<?> reader = pool.submit(() -> {
+            while (!done.get()) {
+                if (repository.findById(id).isEmpty() || repository.findByStudentID("202500000001").isEmpty()) {
+                    missing.incrementAndGet();
+                }
+            }
+        });
+
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            writers.add(pool.submit(() -> {
+                for (int i = 0; i < changesPerThread; i++) {
+                    while (true) {
+                        Member current = repository.findById(id).orElseThrow();
+                        // 每次成功替换都让 salaryScore 加一，丢失更新会让总数对不上
+                        Member next = copyAs(current, current instanceof RegularMember);
+                        next.setSalaryScore(current.getSalaryScore() + 1);
+                        if (repository.compareAndReplace(next, current.getVersion())) break;
+                    }
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        done.set(true);
+        reader.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        Member last = repository.findById(id).orElseThrow();
+        assertEquals(0, missing.get());
+        assertEquals(threads * changesPerThread, (int) last.getSalaryScore());
+        assertEquals(firstVersion + threads * changesPerThread, last.getVersion());
+        assertEquals(1, repository.findByMemberType(last.getMemberType()).size());
+        assertEquals(1, repository.snapshot().members().size());
+    }
+}
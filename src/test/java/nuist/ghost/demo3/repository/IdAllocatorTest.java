@@ -0,0 +1,84 @@
+package nuist.ghost.demo3.repository;
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.RegularMember;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IdAllocatorTest {
+
+    @Test
+    void allocatesSmallestFreeIdFirst() {
+        IdAllocator allocator = new IdAllocator();
+        assertEquals(0, allocator.allocate());
+        assertEquals(1, allocator.allocate());
+        assertEquals(2, allocator.allocate());
+
+        allocator.release(1);
+        allocator.release(0);
+        assertEquals(0, allocator.allocate());
+        assertEquals(1, allocator.allocate());
+        assertEquals(3, allocator.allocate());
+    }
+
+    @Test
+    void reservedIdsAreSkipped() {
+        IdAllocator allocator = new IdAllocator();
+        allocator.reserve(0);
+        allocator.reserve(2);
+        allocator.reserve(-5);
+        assertEquals(1, allocator.allocate());
+        assertEquals(3, allocator.allocate());
+
+        allocator.release(2);
+        assertEquals(2, allocator.allocate());
+    }
+
+    @Test
+    void repositoryReusesIdsLikeTheOriginalScan() {
+        // 与原来的 nextAvailableId（遍历所有 id 找最小空位）逐步比对
+        MemberRepository repository = new MemberRepository();
+        Set<Long> used = new HashSet<>();
+        List<Long> live = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int step = 0; step < 5000; step++) {
+            int action = random.nextInt(10);
+            if (action < 6 || live.isEmpty()) {
+                long expected = 0;
+                while (used.contains(expected)) expected++;
+                Member saved = repository.save(new RegularMember("m" + step, null));
+                assertEquals(expected, saved.getId());
+                used.add(expected);
+                live.add(expected);
+            } else if (action < 9) {
+                Long id = live.remove(random.nextInt(live.size()));
+                repository.deleteById(id);
+                used.remove(id);
+            } else {
+                long id = random.nextInt(400);
+                Member explicit = new RegularMember("x" + step, null);
+                explicit.setId(id);
+                repository.save(explicit);
+                if (used.add(id)) live.add(id);
+            }
+        }
+        assertEquals(used.size(), repository.count());
+    }
+
+    @Test
+    void deleteAllStartsAgainFromZero() {
+        MemberRepository repository = new MemberRepository();
+        repository.save(new RegularMember("a", null));
+        repository.save(new RegularMember("b", null));
+        repository.deleteAll();
+        assertEquals(0L, repository.save(new RegularMember("c", null)).getId());
+    }
+}
@@ -0,0 +1,66 @@
+package nuist.ghost.demo3.repository;
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.RegularMember;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class InsertIfAbsentTest {
+
+    @Test
+    void concurrentInsertsOfOneStudentIDLetExactlyOneWin() throws Exception {
+        MemberRepository repository = new MemberRepository();
+        int threads = 8;
+        int rounds = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < rounds; round++) {
+                String studentID = String.valueOf(202500000000L + round);
+                // 所有线程在同一时刻开始插入同一个学号
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Optional<Member>>> attempts = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    String name = "t" + t;
+                    attempts.add(pool.submit(() -> {
+                        start.await();
+                        return repository.insertIfAbsent(new RegularMember(name, studentID));
+                    }));
+                }
+                start.countDown();
+
+                List<Member> winners = new ArrayList<>();
+                for (Future<Optional<Member>> attempt : attempts) {
+                    attempt.get(30, TimeUnit.SECONDS).ifPresent(winners::add);
+                }
+                assertEquals(1, winners.size(), "studentID " + studentID);
+                Member winner = winners.get(0);
+                assertSame(winner, repository.findByStudentID(studentID).orElseThrow());
+                assertSame(winner, repository.findById(winner.getId()).orElseThrow());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // 各个索引都只看到每个学号的那一个成员
+        assertEquals(rounds, repository.count());
+        assertEquals(rounds, repository.findAll().size());
+        assertEquals(rounds, repository.findByMemberType("RegularMember").size());
+        assertEquals(rounds, repository.findAll().stream().map(Member::getId).distinct().count());
+        int byName = 0;
+        for (int t = 0; t < threads; t++) {
+            byName += repository.findByName("t" + t).size();
+        }
+        assertEquals(rounds, byName);
+    }
+}
@@ -0,0 +1,66 @@
+package nuist.ghost.demo3.repository;
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.RegularMember;
+import nuist.ghost.demo3.entities.SectionHead;
+import nuist.ghost.demo3.exception.DuplicateStudentIDException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoadAllTest {
+
+    private static Member member(Long id, String name, String studentID) {
+        Member m = new RegularMember(name, studentID);
+        if (id != null) m.setId(id);
+        return m;
+    }
+
+    private static List<String> names(Collection<Member> members) {
+        return members.stream().map(Member::getName).toList();
+    }
+
+    @Test
+    void duplicateIdsAndStudentIDsAreRejectedAndTheFirstRecordWins() {
+        MemberRepository repository = new MemberRepository();
+        List<Collection<Member>> reported = new ArrayList<>();
+        repository.addChangeListener(new MemberChangeListener() {
+            @Override
+            public void onChange(Member before, Member after) {
+            }
+
+            @Override
+            public void onLoad(Collection<Member> loaded) {
+                reported.add(loaded);
+            }
+        });
+
+        Member a = member(3L, "a", "202500000001");
+        Member sameId = member(3L, "same id", "202500000002");
+        Member sameStudentID = member(7L, "same studentID", "202500000001");
+        Member noId = member(null, "no id", "202500000003");
+        Member noIdDuplicate = member(null, "no id, same studentID", "202500000003");
+        Member b = new SectionHead("b", null);
+        b.setId(5L);
+
+        List<Member> rejected = repository.loadAll(List.of(a, sameId, sameStudentID, noId, noIdDuplicate, b));
+
+        assertEquals(List.of(sameId, sameStudentID, noIdDuplicate), rejected);
+        assertEquals(List.of("no id", "a", "b"), names(repository.findAll()));
+        assertSame(a, repository.findByStudentID("202500000001").orElseThrow());
+        assertEquals(0L, noId.getId()); // 没有 id 的成员在装载完其余成员之后分配最小的空闲 id
+        assertEquals(1, repository.version());
+        assertEquals(List.of(List.of("a", "b", "no id")), reported.stream().map(LoadAllTest::names).toList());
+
+        // 装载后 id 分配器和学号索引都已重建
+        assertEquals(1L, repository.save(member(null, "c", "202500000004")).getId());
+        assertThrows(DuplicateStudentIDException.class, () -> repository.save(member(null, "d", "202500000001")));
+        assertEquals(List.of("a"), names(repository.findByName("a")));
+    }
+}
@@ -0,0 +1,186 @@
+package nuist.ghost.demo3.repository;
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.RegularMember;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PersistentIdMapTest {
+
+    @Test
+    void behavesLikeATreeMapAndOldVersionsNeverChange() {
+        Random random = new Random(7);
+        TreeMap<Long, Integer> expected = new TreeMap<>();
+        PersistentIdMap<Integer> map = PersistentIdMap.empty();
+
+        for (int step = 0; step < 20_000; step++) {
+            long key = random.nextInt(2_000);
+            PersistentIdMap<Integer> before = map;
+            List<Integer> beforeValues = new ArrayList<>(before.values());
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, step);
+                map = map.put(key, step);
+            }
+            // 旧版本不受新写入影响
+            assertEquals(beforeValues, new ArrayList<>(before.values()));
+        }
+
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(map.values()));
+        assertEquals(expected.size(), map.size());
+        for (int i = 0; i < map.size(); i += 97) {
+            assertEquals(new ArrayList<>(expected.values()).get(i), map.values().get(i));
+        }
+        long after = expected.firstKey() + 500;
+        assertEquals(new ArrayList<>(expected.tailMap(after, false).values()),
+                map.streamAfter(after).collect(Collectors.toList()));
+        assertEquals(new ArrayList<>(expected.values()), map.streamAfter(null).collect(Collectors.toList()));
+        // 游标不在表里时从比它大的第一个 id 开始
+        assertEquals(new ArrayList<>(expected.tailMap(-1L, false).values()),
+                map.streamAfter(-1L).collect(Collectors.toList()));
+        assertEquals(new ArrayList<>(expected.keySet()), toList(map.keys()));
+        assertNull(map.get(-1));
+    }
+
+    private static List<Long> toList(Iterable<Long> keys) {
+        List<Long> list = new ArrayList<>();
+        keys.forEach(list::add);
+        return list;
+    }
+
+    @Test
+    void snapshotStaysConsistentWhileWritersRun() {
+        MemberRepository repository = new MemberRepository();
+        for (int i = 0; i < 1000; i++) {
+            repository.save(new RegularMember("m" + i, null));
+        }
+        MemberSnapshot snapshot = repository.snapshot();
+        for (int i = 0; i < 500; i++) {
+            repository.deleteById((long) i);
+        }
+        assertEquals(1000, snapshot.members().size());
+        assertEquals(500, repository.findAll().size());
+        assertEquals(0L, snapshot.members().get(0).getId());
+    }
+
+    @Test
+    void findersReadRecordsFromTheGivenSnapshot() {
+        MemberRepository repository = new MemberRepository();
+        Member original = repository.save(new RegularMember("a", "202500000001"));
+        MemberSnapshot before = repository.snapshot();
+        Member edited = new RegularMember("a", "202500000001");
+        edited.setId(original.getId());
+        edited.setEmail("a@nuist.edu.cn");
+        repository.compareAndReplace(edited, original.getVersion());
+
+        // 旧快照读到的是旧记录，新快照读到的是新记录，与 store 里当前是哪条无关
+        assertSame(original, repository.streamByName(before, "a", null).findFirst().orElseThrow());
+        assertSame(original, before.findById(original.getId()).orElseThrow());
+        assertSame(edited, repository.streamByName(repository.snapshot(), "a", null).findFirst().orElseThrow());
+    }
+
+    /*
+     * 读吞吐量对比（仅打印结果，不作为断言；mvn test -Pbenchmark 运行）
+     * 旧做法：CopyOnWriteArrayList，每次 findAll 复制整张表再遍历
+     * 新做法：snapshot() 直接拿到不可变视图再遍历
+     */
+    @Tag("benchmark")
+    @Test
+    void readThroughputComparedWithCopyOnWriteList() throws Exception {
+        int members = 20_000;
+        MemberRepository repository = new MemberRepository();
+        CopyOnWriteArrayList<Member> legacy = new CopyOnWriteArrayList<>();
+        List<Member> batch = new ArrayList<>();
+        for (int i = 0; i < members; i++) {
+            Member m = new RegularMember("m" + i, null);
+            m.setId((long) i);
+            batch.add(m);
+        }
+        repository.loadAll(batch);
+        legacy.addAll(batch);
+
+        Supplier<List<Member>> legacyRead = () -> new ArrayList<>(legacy);
+        Runnable legacyWrite = () -> legacy.set(0, legacy.get(0));
+        Supplier<List<Member>> snapshotRead = () -> repository.snapshot().members();
+        Runnable snapshotWrite = () -> {
+            Member m = repository.findById(0).orElseThrow();
+            Member copy = new RegularMember(m.getName(), m.getStudentID());
+            copy.setId(m.getId());
+            repository.compareAndReplace(copy, m.getVersion());
+        };
+        // 先各跑一轮预热 JIT，再交替测量
+        measure(legacyRead, legacyWrite, false);
+        measure(snapshotRead, snapshotWrite, false);
+        System.out.println("reads of " + members + " members in 500 ms (4 readers, ~1 write/ms)");
+        System.out.println("  findAll only:      copy-on-write list=" + measure(legacyRead, legacyWrite, false)
+                + ", persistent snapshot=" + measure(snapshotRead, snapshotWrite, false));
+        // 单核机器上先后顺序影响很大，两种顺序各测一次
+        for (int round = 0; round < 2; round++) {
+            long legacyReads = round == 0 ? measure(legacyRead, legacyWrite, true) : 0;
+            long snapshotReads = measure(snapshotRead, snapshotWrite, true);
+            if (round == 1) legacyReads = measure(legacyRead, legacyWrite, true);
+            System.out.println("  findAll + iterate: copy-on-write list=" + legacyReads
+                    + ", persistent snapshot=" + snapshotReads);
+        }
+    }
+
+    private static long measure(Supplier<List<Member>> read, Runnable write, boolean iterate) throws Exception {
+        int readers = 4;
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(readers + 1);
+        List<Future<Long>> counts = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            counts.add(pool.submit(() -> {
+                long reads = 0;
+                double sink = 0;
+                while (!stop.get()) {
+                    List<Member> view = read.get();
+                    if (iterate) {
+                        for (Member m : view) {
+                            sink += m.getSalaryScore();
+                        }
+                    } else {
+                        sink += view.size();
+                    }
+                    reads++;
+                }
+                return sink >= 0 ? reads : -reads;
+            }));
+        }
+        Future<?> writer = pool.submit(() -> {
+            while (!stop.get()) {
+                write.run();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        });
+        Thread.sleep(500);
+        stop.set(true);
+        long total = 0;
+        for (Future<Long> count : counts) {
+            total += count.get(10, TimeUnit.SECONDS);
+        }
+        writer.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+        return total;
+    }
+}
@@ -0,0 +1,140 @@
+package nuist.ghost.demo3.repository;
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.RegularMember;
+import nuist.ghost.demo3.entities.ScoreField;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ScoreIndexTest {
+
+    private static final Comparator<Member> BY_SCORE =
+            Comparator.comparingDouble(Member::getInterviewScore).reversed().thenComparingLong(Member::getId);
+
+    private static Member member(long id, double score, boolean probation) {
+        Member m = new RegularMember("m" + id, null);
+        m.setId(id);
+        m.setInterviewScore(score);
+        m.setProbation(probation);
+        return m;
+    }
+
+    /* 全量排序得到的排行榜，用来和增量维护的结果比较 */
+    private static List<RankedMember> sorted(Map<Long, Member> rows, Boolean probation, int k) {
+        List<Member> scope = rows.values().stream()
+                .filter(m -> probation == null || m.isProbation() == probation)
+                .sorted(BY_SCORE)
+                .collect(Collectors.toList());
+        List<RankedMember> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(k, scope.size()); i++) {
+            Member m = scope.get(i);
+            int rank = (int) scope.stream().filter(r -> r.getInterviewScore() > m.getInterviewScore()).count() + 1;
+            result.add(new RankedMember(rank, m.getInterviewScore(), scope.size(), m));
+        }
+        return result;
+    }
+
+    private static ScoreIndex randomIndex(Map<Long, Member> rows) {
+        ScoreIndex index = ScoreIndex.empty(ScoreField.INTERVIEW);
+        Random random = new Random(11);
+        for (int step = 0; step < 5000; step++) {
+            long id = random.nextInt(300);
+            if (random.nextInt(5) == 0) {
+                index = index.move(rows.remove(id), null);
+            } else {
+                // 分数取值少，保证有大量同分
+                Member m = member(id, random.nextInt(20), random.nextBoolean());
+                index = index.move(rows.put(id, m), m);
+            }
+        }
+        return index;
+    }
+
+    @Test
+    void leaderboardMatchesAFullSortThroughWrites() {
+        Map<Long, Member> rows = new HashMap<>();
+        ScoreIndex index = randomIndex(rows);
+
+        for (Boolean probation : new Boolean[]{null, true, false}) {
+            assertEquals(sorted(rows, probation, 25), index.top(probation, 25));
+            assertEquals(sorted(rows, probation, 1000), index.top(probation, 1000));
+            List<RankedMember> all = sorted(rows, probation, rows.size());
+            assertEquals(all.size(), index.size(probation));
+            for (RankedMember expected : all) {
+                assertEquals(expected, index.rank(expected.member(), probation));
+            }
+        }
+        Member intern = rows.values().stream().filter(Member::isProbation).findFirst().orElseThrow();
+        assertNull(index.rank(intern, false));
+    }
+
+    @Test
+    void scoreRangesMatchAFilteredSort() {
+        Map<Long, Member> rows = new HashMap<>();
+        ScoreIndex index = randomIndex(rows);
+
+        double[][] ranges = {{3, 7}, {0, 19}, {5, 5}, {7.5, 8.5}, {12, 4}};
+        for (double[] range : ranges) {
+            for (boolean minInclusive : new boolean[]{true, false}) {
+                for (boolean maxInclusive : new boolean[]{true, false}) {
+                    double min = range[0];
+                    double max = range[1];
+                    List<Member> expected = rows.values().stream()
+                            .filter(m -> minInclusive ? m.getInterviewScore() >= min : m.getInterviewScore() > min)
+                            .filter(m -> maxInclusive ? m.getInterviewScore() <= max : m.getInterviewScore() < max)
+                            .sorted(BY_SCORE)
+                            .collect(Collectors.toList());
+                    assertEquals(expected, index.streamBetween(min, minInclusive, max, maxInclusive, null, null).toList());
+                    assertEquals(expected.size(), index.countBetween(min, minInclusive, max, maxInclusive));
+                }
+            }
+        }
+    }
+
+    @Test
+    void cursorPagesWalkTheRangeOnceInOrder() {
+        Map<Long, Member> rows = new HashMap<>();
+        ScoreIndex index = randomIndex(rows);
+        List<Member> expected = index.streamBetween(4, true, 15, false, null, null).toList();
+
+        List<Member> paged = new ArrayList<>();
+        Member last = null;
+        do {
+            List<Member> page = index.streamBetween(4, true, 15, false,
+                    last == null ? null : last.getInterviewScore(), last == null ? null : last.getId()).limit(7).toList();
+            paged.addAll(page);
+            last = page.size() < 7 ? null : page.get(page.size() - 1);
+        } while (last != null);
+        assertEquals(expected, paged);
+
+        // 游标对应的成员已被删除时，仍从它原来的位置之后继续
+        Member gone = expected.get(10);
+        ScoreIndex without = index.move(gone, null);
+        assertEquals(expected.subList(11, expected.size()),
+                without.streamBetween(4, true, 15, false, gone.getInterviewScore(), gone.getId()).toList());
+    }
+
+    @Test
+    void olderIndexesNeverChange() {
+        ScoreIndex empty = ScoreIndex.empty(ScoreField.INTERVIEW);
+        Member a = member(1, 10, true);
+        ScoreIndex one = empty.move(null, a);
+        Member promoted = member(1, 12, false);
+        ScoreIndex moved = one.move(a, promoted);
+
+        assertEquals(List.of(), empty.top(null, 10));
+        assertEquals(List.of(new RankedMember(1, 10, 1, a)), one.top(true, 10));
+        assertEquals(List.of(), moved.top(true, 10));
+        assertEquals(List.of(new RankedMember(1, 12, 1, promoted)), moved.top(null, 10));
+    }
+}
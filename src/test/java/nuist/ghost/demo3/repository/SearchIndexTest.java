@@ -0,0 +1,151 @@
+package nuist.ghost.demo3.repository;
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.RegularMember;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexTest {
+
+    /* 索引加上按 id 保存的当前记录，按仓库的顺序调用 add / remove */
+    private static final class Indexed {
+        private final SearchIndex index = new SearchIndex();
+        private final ConcurrentHashMap<Long, Member> records = new ConcurrentHashMap<>();
+
+        void put(long id, String name, String studentID) {
+            Member m = new RegularMember(name, studentID);
+            m.setId(id);
+            Member before = records.get(id);
+            index.add(before, m);
+            records.put(id, m);
+            if (before != null) index.remove(before, m);
+        }
+
+        void remove(long id) {
+            Member before = records.remove(id);
+            if (before != null) index.remove(before, null);
+        }
+
+        List<Long> search(String query, boolean names, boolean studentIDs, int limit) {
+            return index.search(query, names, studentIDs, limit, records::get).stream()
+                    .map(SearchIndex.Hit::id).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void ranksExactThenPrefixThenSubstring() {
+        Indexed index = new Indexed();
+        index.put(1, "欧阳明", "202500000001");
+        index.put(2, "张明", "202500000002");
+        index.put(3, "明", "202500000003");
+        index.put(4, "明华", "202500000013");
+        index.put(5, "Ming Zhang", "A2025");
+
+        assertEquals(List.of(3L, 4L, 2L, 1L), index.search("明", true, false, 10));
+        assertEquals(List.of(1L), index.search("欧阳", true, false, 10));
+        assertEquals(List.of(5L), index.search("ming", true, false, 10));
+        assertEquals(List.of(5L), index.search("ＭＩＮＧ ", true, false, 10));
+        assertEquals(List.of(), index.search("阳欧", true, false, 10));
+
+        // 学号前缀；完全匹配排最前
+        assertEquals(List.of(1L, 2L, 3L, 4L), index.search("2025000000", false, true, 10));
+        assertEquals(List.of(4L), index.search("20250000001", false, true, 10));
+        index.put(6, "六", "2025000000");
+        assertEquals(List.of(6L, 1L, 2L), index.search("2025000000", false, true, 3));
+        index.remove(6);
+        assertEquals(List.of(), index.search("a2025", false, true, 10));
+        assertEquals(List.of(3L, 4L), index.search("明", true, false, 2));
+
+        // 改名、删除后索引同步
+        index.put(3, "李四", "202500000003");
+        index.remove(4);
+        assertEquals(List.of(2L, 1L), index.search("明", true, false, 10));
+        // 新旧姓名共有的 n-gram 不会被改名去掉
+        index.put(2, "张明华", "202500000002");
+        assertEquals(List.of(2L), index.search("张明", true, false, 10));
+        // 只改大小写，规范化后的姓名不变，命中的仍是新记录
+        index.put(5, "MING ZHANG", "A2025");
+        assertEquals("MING ZHANG", index.index.search("ming", true, false, 10, index.records::get).get(0).member().getName());
+    }
+
+    @Test
+    void exactAndPrefixMatchesAreNeverCutOffBySubstringMatches() {
+        Indexed index = new Indexed();
+        int substrings = 4 * SearchIndex.MAX_SCANNED_SUBSTRINGS;
+        for (long id = 1; id <= substrings; id++) {
+            index.put(id, "张明" + id, null);
+        }
+        long exact = substrings + 1;
+        long prefix = substrings + 2;
+        index.put(exact, "明", null);
+        index.put(prefix, "明华" + substrings, null);
+
+        assertEquals(List.of(exact, prefix), index.search("明", true, false, 2));
+        // 子串匹配只排在它们后面
+        assertEquals(List.of(exact, prefix), index.search("明", true, false, 3).subList(0, 2));
+    }
+
+    @Test
+    void concurrentRemovalNeverDropsAnotherMembersPosting() throws Exception {
+        Indexed index = new Indexed();
+        int members = 20_000;
+        // 一个线程反复加入、删除 id 0，让“明”的列表不断变空又重建；另一个线程同时加入其他成员
+        Thread churn = new Thread(() -> {
+            for (int i = 0; i < members; i++) {
+                index.put(0, "明", null);
+                index.remove(0);
+            }
+        });
+        churn.start();
+        for (long id = 1; id <= members; id++) {
+            index.put(id, "明", null);
+        }
+        churn.join();
+
+        List<Long> found = index.search("明", true, false, members + 1);
+        assertEquals(members, found.size());
+        assertEquals(LongStream.rangeClosed(1, members).boxed().toList(), found.stream().sorted().toList());
+    }
+
+    /* 大名单上的查询耗时（只打印；mvn test -Pbenchmark 运行） */
+    @Tag("benchmark")
+    @Test
+    void searchLatencyOnALargeRoster() {
+        String surnames = "王李张刘陈杨黄赵吴周徐孙马朱胡郭何高林罗郑梁谢宋唐许韩冯邓曹彭曾肖田董袁潘于蒋蔡余杜叶程苏魏吕丁任沈姚卢";
+        String given = "伟芳娜秀英敏静丽强磊军洋勇艳杰娟涛明超秀兰霞平刚桂英华玉萍红娥玲芬芳燕彩春菊兰凤洁梅琳素云莲真环雪荣爱妹霞香月莺媛艳瑞凡佳嘉琼勤珍贞莉桂娣叶璧璐娅琦晶妍茜秋珊莎锦黛青倩婷姣婉娴瑾颖露瑶怡婵雁蓓纨仪荷丹蓉眉君琴蕊薇菁梦岚苑婕馨瑗琰韵融园艺咏卿聪澜纯毓悦昭冰爽琬茗羽希宁欣飘育滢馥筠柔竹霭凝晓欢霄枫芸菲寒伊亚宜可姬舒影荔枝丽阳妮宝贝初程梵罡恒鸿桦骅剑娇纪宽苛灵玛媚琪晴容睿烁堂唯威韦雯苇萱阅彦宇雨洋忠宗曼紫逸贤蝶菡绿蓝儿翠烟";
+        Random random = new Random(1);
+        Indexed index = new Indexed();
+        int members = 100_000;
+        for (int i = 0; i < members; i++) {
+            StringBuilder name = new StringBuilder().append(surnames.charAt(random.nextInt(surnames.length())));
+            for (int j = 0; j < 1 + random.nextInt(2); j++) {
+                name.append(given.charAt(random.nextInt(given.length())));
+            }
+            index.put(i, name.toString(), Long.toString(202500000000L + i));
+        }
+        String[] queries = {"张", "张伟", "明华", "欧阳", "2025000", "20250009999", "婷"};
+        for (int round = 0; round < 200; round++) { // 预热
+            for (String q : queries) index.search(q, true, true, 10);
+        }
+        for (String q : queries) {
+            int runs = 1000;
+            long start = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < runs; i++) {
+                found = index.search(q, true, true, 10).size();
+            }
+            long micros = (System.nanoTime() - start) / runs / 1000;
+            System.out.println("search \"" + q + "\" over " + members + " members: " + micros + " us, top " + found);
+            assertTrue(found <= 10);
+        }
+    }
+}
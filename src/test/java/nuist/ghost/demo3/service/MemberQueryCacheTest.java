@@ -0,0 +1,113 @@
+package nuist.ghost.demo3.service;
+
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.RegularMember;
+import nuist.ghost.demo3.entities.SectionHead;
+import nuist.ghost.demo3.repository.MemberRepository;
+import nuist.ghost.demo3.repository.MemberSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MemberQueryCacheTest {
+
+    private static List<String> byName(MemberQueryCache cache, MemberRepository repository, String name, Long after) {
+        MemberSnapshot snapshot = repository.snapshot();
+        Stream<Member> rows = cache.stream("name", Member::getName, name,
+                snapshot, a -> repository.streamByName(snapshot, name, a), after);
+        return rows.map(Member::getStudentID).collect(Collectors.toList());
+    }
+
+    @Test
+    void onlyRelatedChangesInvalidate() {
+        MemberRepository repository = new MemberRepository();
+        MemberQueryCache cache = new MemberQueryCache(repository, 16, 1000);
+        Member a = repository.save(new RegularMember("a", "1"));
+        repository.save(new RegularMember("a", "2"));
+        repository.save(new RegularMember("b", "3"));
+
+        assertEquals(List.of("1", "2"), byName(cache, repository, "a", null));
+        assertEquals(List.of("2"), byName(cache, repository, "a", a.getId()));
+        assertEquals(1, cache.stats().hits());
+
+        // 与 "a" 无关的修改不影响缓存
+        repository.save(new RegularMember("c", "4"));
+        byName(cache, repository, "a", null);
+        assertEquals(2, cache.stats().hits());
+        assertEquals(0, cache.stats().invalidations());
+
+        // 改名后两边的结果都要失效
+        Member renamed = new SectionHead("b", "1");
+        renamed.setId(a.getId());
+        repository.compareAndReplace(renamed, a.getVersion());
+        assertEquals(1, cache.stats().invalidations());
+        assertEquals(List.of("2"), byName(cache, repository, "a", null));
+        assertEquals(List.of("1", "3"), byName(cache, repository, "b", null));
+
+        repository.deleteById(renamed.getId());
+        assertEquals(List.of("3"), byName(cache, repository, "b", null));
+    }
+
+    @Test
+    void publishedButUnreportedChangeIsNeverHiddenByAnEntry() {
+        MemberRepository repository = new MemberRepository();
+        List<List<String>> seenDuringChange = new ArrayList<>();
+        MemberQueryCache[] cache = new MemberQueryCache[1];
+        // 先于缓存注册：回调时新版本已发布，缓存还没收到通知，相当于一个恰好落在这段时间里的读请求
+        repository.addChangeListener((before, after) -> {
+            if (cache[0] != null) seenDuringChange.add(byName(cache[0], repository, "a", null));
+        });
+        cache[0] = new MemberQueryCache(repository, 16, 1000);
+        Member a = repository.save(new RegularMember("a", "1"));
+        assertEquals(List.of("1"), byName(cache[0], repository, "a", null));
+
+        Member renamed = new RegularMember("b", "1");
+        renamed.setId(a.getId());
+        repository.compareAndReplace(renamed, a.getVersion());
+
+        assertEquals(List.of(), seenDuringChange.get(1));
+        assertEquals(List.of(), byName(cache[0], repository, "a", null));
+    }
+
+    @Test
+    void partiallyReadResultsAreNotCached() {
+        MemberRepository repository = new MemberRepository();
+        MemberQueryCache cache = new MemberQueryCache(repository, 16, 2);
+        for (int i = 0; i < 3; i++) {
+            repository.save(new RegularMember("a", String.valueOf(i)));
+        }
+        MemberSnapshot snapshot = repository.snapshot();
+        try (Stream<Member> rows = cache.stream("name", Member::getName, "a",
+                snapshot, after -> repository.streamByName(snapshot, "a", after), null)) {
+            assertEquals(1, rows.limit(1).count());
+        }
+        assertEquals(0, cache.stats().entries());
+
+        // 读完但超出成员预算（2）也不缓存
+        assertEquals(List.of("0", "1", "2"), byName(cache, repository, "a", null));
+        assertEquals(0, cache.stats().entries());
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() {
+        MemberRepository repository = new MemberRepository();
+        MemberQueryCache cache = new MemberQueryCache(repository, 2, 1000);
+        for (int i = 0; i < 3; i++) {
+            repository.save(new RegularMember("n" + i, String.valueOf(i)));
+        }
+        byName(cache, repository, "n0", null);
+        byName(cache, repository, "n1", null);
+        byName(cache, repository, "n0", null); // n0 最近用过，n1 先被淘汰
+        byName(cache, repository, "n2", null);
+        assertEquals(1, cache.stats().evictions());
+        assertEquals(2, cache.stats().entries());
+
+        byName(cache, repository, "n0", null);
+        assertEquals(2, cache.stats().hits());
+    }
+}
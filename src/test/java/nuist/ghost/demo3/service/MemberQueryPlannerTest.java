@@ -0,0 +1,88 @@
+package nuist.ghost.demo3.service;
+
+import nuist.ghost.demo3.dto.MemberQueryRequest;
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.RegularMember;
+import nuist.ghost.demo3.entities.SectionHead;
+import nuist.ghost.demo3.repository.MemberRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemberQueryPlannerTest {
+
+    private static MemberRepository roster() {
+        MemberRepository repository = new MemberRepository();
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            Member m = i % 100 == 0 ? new SectionHead("张" + i, "2025" + i) : new RegularMember("member" + i, "2025" + i);
+            m.setProbation(i % 3 != 0);
+            m.setInternshipScore(random.nextInt(30));
+            m.setSalaryScore(random.nextInt(5000));
+            repository.save(m);
+        }
+        return repository;
+    }
+
+    private static List<Long> run(MemberRepository repository, MemberQueryRequest request, Comparator<Member> order) {
+        MemberQueryPlanner.Plan plan = new MemberQueryPlanner(repository).plan(request);
+        try (Stream<Member> rows = plan.access().rows().get()) {
+            Stream<Member> matches = rows.filter(plan.filter());
+            return (order == null ? matches : matches.sorted(order)).map(Member::getId).collect(Collectors.toList());
+        }
+    }
+
+    private static List<Long> bruteForce(MemberRepository repository, Predicate<Member> condition) {
+        return repository.findAll().stream().filter(condition).map(Member::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void picksTheMostSelectivePath() {
+        MemberRepository repository = roster();
+        MemberQueryPlanner planner = new MemberQueryPlanner(repository);
+
+        MemberQueryRequest narrowType = new MemberQueryRequest("SectionHead", true, null, null,
+                Map.of("internship", new MemberQueryRequest.ScoreRange(10.0, null)), null, null, null, null);
+        MemberQueryPlanner.Plan plan = planner.plan(narrowType);
+        assertEquals("memberType", plan.access().condition());
+        assertEquals(20, plan.access().estimatedRows());
+        assertTrue(plan.describe().endsWith("then filter: isProbation, internship"), plan.describe());
+        assertEquals(bruteForce(repository, m -> m instanceof SectionHead && m.isProbation() && m.getInternshipScore() >= 10),
+                run(repository, narrowType, null));
+
+        MemberQueryRequest narrowScore = new MemberQueryRequest(null, false, null, null,
+                Map.of("salary", new MemberQueryRequest.ScoreRange(100.0, 120.0)), null, null, null, null);
+        assertEquals("salary", planner.plan(narrowScore).access().condition());
+        assertEquals(bruteForce(repository, m -> !m.isProbation() && m.getSalaryScore() >= 100 && m.getSalaryScore() <= 120),
+                run(repository, narrowScore, null));
+
+        MemberQueryRequest byFragment = new MemberQueryRequest(null, null, null, "ER19", null, null, null, null, null);
+        assertEquals("nameContains", planner.plan(byFragment).access().condition());
+        assertEquals(bruteForce(repository, m -> m.getName().contains("er19")), run(repository, byFragment, null));
+
+        MemberQueryRequest nothing = new MemberQueryRequest(null, null, null, null, null, null, null, null, null);
+        assertEquals("full scan", planner.plan(nothing).access().description());
+    }
+
+    @Test
+    void sortsByTheRequestedField() {
+        MemberRepository repository = roster();
+        MemberQueryRequest request = new MemberQueryRequest(null, true, null, null, null, "internship", true, null, null);
+        Comparator<Member> order = MemberQueryPlanner.order("internship", true);
+        List<Long> ids = run(repository, request, order);
+        List<Long> expected = repository.findAll().stream().filter(Member::isProbation)
+                .sorted(Comparator.comparingDouble(Member::getInternshipScore).thenComparing(Member::getId).reversed())
+                .map(Member::getId).collect(Collectors.toList());
+        assertEquals(expected, ids);
+        assertEquals(null, MemberQueryPlanner.order("id", false));
+    }
+}
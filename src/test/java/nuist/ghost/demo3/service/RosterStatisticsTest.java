@@ -0,0 +1,100 @@
+package nuist.ghost.demo3.service;
+
+import nuist.ghost.demo3.dto.RosterStats;
+import nuist.ghost.demo3.entities.Member;
+import nuist.ghost.demo3.entities.RegularMember;
+import nuist.ghost.demo3.entities.SectionHead;
+import nuist.ghost.demo3.repository.MemberRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RosterStatisticsTest {
+
+    private static Member copyOf(Member m, boolean sectionHead) {
+        Member copy = sectionHead ? new SectionHead(m.getName(), m.getStudentID()) : new RegularMember(m.getName(), m.getStudentID());
+        copy.setId(m.getId());
+        copy.setProbation(m.isProbation());
+        copy.setInterviewScore(m.getInterviewScore());
+        copy.setInternshipScore(m.getInternshipScore());
+        copy.setSalaryScore(m.getSalaryScore());
+        return copy;
+    }
+
+    /* 与逐个遍历成员算出的结果比较 */
+    private static void assertMatchesScan(RosterStats stats, List<Member> members) {
+        assertEquals(members.size(), stats.total());
+        assertEquals(members.stream().filter(Member::isProbation).count(), stats.probation());
+        assertEquals(members.stream().filter(m -> m instanceof SectionHead).count(),
+                stats.byMemberType().getOrDefault("SectionHead", 0L));
+        double salary = members.stream().mapToDouble(Member::getSalaryScore).average().orElse(0);
+        assertEquals(salary, stats.scores().get("salary").average(), 1e-9);
+        long[] histogram = new long[RosterStatistics.HISTOGRAM_BUCKETS];
+        for (Member m : members) {
+            histogram[Math.min(9, (int) (m.getInternshipScore() / 2))]++;
+        }
+        assertArrayEquals(histogram, stats.scores().get("internship").histogram());
+    }
+
+    @Test
+    void staysEqualToAFullScanThroughWrites() {
+        MemberRepository repository = new MemberRepository();
+        List<Member> initial = new ArrayList<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            Member m = new RegularMember("m" + i, "2025" + i);
+            m.setId((long) i);
+            m.setProbation(random.nextBoolean());
+            m.setInternshipScore(random.nextInt(21));
+            m.setSalaryScore(random.nextInt(5501) + 0.25);
+            initial.add(m);
+        }
+        repository.loadAll(initial);
+        RosterStatistics statistics = new RosterStatistics(repository);
+        statistics.onLoad(repository.findAll()); // 监听器注册在装载之后，手动补上
+
+        for (int step = 0; step < 2000; step++) {
+            long id = random.nextInt(250);
+            Member current = repository.findById(id).orElse(null);
+            if (current == null) {
+                Member m = new RegularMember("n" + step, "2026" + step);
+                m.setInternshipScore(random.nextInt(21));
+                repository.save(m);
+            } else if (random.nextInt(4) == 0) {
+                repository.deleteById(id);
+            } else {
+                Member next = copyOf(current, random.nextBoolean());
+                next.setProbation(random.nextBoolean());
+                next.setSalaryScore(random.nextInt(5501) + 0.5);
+                repository.compareAndReplace(next, current.getVersion());
+            }
+        }
+        assertMatchesScan(statistics.snapshot(), repository.findAll());
+
+        repository.deleteAll();
+        RosterStats empty = statistics.snapshot();
+        assertEquals(0, empty.total());
+        assertEquals(Map.of(), empty.byMemberType());
+    }
+
+    @Test
+    void aBatchIsCountedAsOneVersion() {
+        MemberRepository repository = new MemberRepository();
+        RosterStatistics statistics = new RosterStatistics(repository);
+        long version = statistics.version();
+
+        repository.insertAllIfAbsent(List.of(
+                new RegularMember("a", "202500000001"),
+                new RegularMember("b", "202500000002"),
+                new SectionHead("c", "202500000003")));
+
+        assertEquals(version + 1, statistics.version());
+        assertMatchesScan(statistics.snapshot(), repository.findAll());
+    }
+}
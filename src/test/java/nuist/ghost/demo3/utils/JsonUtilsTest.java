@@ -0,0 +1,79 @@
+package nuist.ghost.demo3.utils;
+
+import nuist.ghost.demo3.entities.Member;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonUtilsTest {
+
+    @TempDir
+    Path dir;
+
+    private static String record(long id, String name, String memberType) {
+        return "{\"id\":" + id + ",\"name\":\"" + name + "\",\"studentID\":\"20250000000" + id
+                + "\",\"interviewScore\":12.5,\"memberType\":\"" + memberType + "\",\"probation\":true}";
+    }
+
+    private JsonUtils.MemberReadResult read(String json, boolean parallel) throws Exception {
+        Path path = dir.resolve("members.json");
+        Files.writeString(path, json, StandardCharsets.UTF_8);
+        return JsonUtils.readMembers(path, parallel);
+    }
+
+    private static List<String> names(JsonUtils.MemberReadResult result) {
+        return result.members().stream().map(Member::getName).toList();
+    }
+
+    @Test
+    void badRecordsAreSkippedAndReportedOneByOne() throws Exception {
+        String json = "[" + record(1, "a", "RegularMember")
+                + "," + record(2, "b", "Janitor")
+                + ",42"
+                + ",{\"id\":\"not a number\",\"memberType\":\"SectionHead\"}"
+                + "," + record(5, "e", "SectionHead") + "]";
+        for (boolean parallel : new boolean[]{false, true}) {
+            JsonUtils.MemberReadResult result = read(json, parallel);
+            assertEquals(List.of("a", "e"), names(result));
+            assertEquals("SectionHead", result.members().get(1).getMemberType());
+            assertEquals(12.5, result.members().get(0).getInterviewScore());
+            assertEquals(3, result.problems().size());
+            assertTrue(result.problems().get(0).startsWith("record 1:"), result.problems().get(0));
+            assertTrue(result.problems().get(0).contains("Janitor"), result.problems().get(0));
+            assertEquals("record 2: not a JSON object", result.problems().get(1));
+            assertTrue(result.problems().get(2).startsWith("record 3:"), result.problems().get(2));
+        }
+    }
+
+    @Test
+    void truncatedFileKeepsTheRecordsBeforeTheCut() throws Exception {
+        String json = "[" + record(1, "a", "RegularMember") + "," + record(2, "b", "President") + ","
+                + record(3, "c", "RegularMember").substring(0, 20);
+        JsonUtils.MemberReadResult result = read(json, false);
+        assertEquals(List.of("a", "b"), names(result));
+        assertEquals(1, result.problems().size());
+        assertTrue(result.problems().get(0).contains("corrupt JSON"), result.problems().get(0));
+    }
+
+    @Test
+    void corruptOrMissingFiles() throws Exception {
+        JsonUtils.MemberReadResult notAnArray = read("{\"members\":[]}", false);
+        assertEquals(List.of(), notAnArray.members());
+        assertEquals(List.of("root is not a JSON array"), notAnArray.problems());
+
+        JsonUtils.MemberReadResult garbage = read("[" + record(1, "a", "RegularMember") + ",}{", false);
+        assertEquals(List.of("a"), names(garbage));
+        assertEquals(1, garbage.problems().size());
+
+        JsonUtils.MemberReadResult missing = JsonUtils.readMembers(dir.resolve("absent.json"), false);
+        assertEquals(List.of(), missing.members());
+        assertEquals(List.of(), missing.problems());
+    }
+}